@@ -0,0 +1,64 @@
+package org.dontpanic.riot.embeddedjvxml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.dontpanic.riot.embeddedjvxml.CachingEcmaScriptDataModel;
+import org.dontpanic.riot.embeddedjvxml.ScriptCache;
+import org.jvoicexml.interpreter.datamodel.DataModel;
+import org.mozilla.javascript.Context;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to set up the data model of a new session and evaluate a first
+ * expression, with and without the shared root scope. Run with
+ * <code>-prof gc</code> to see the allocation per session.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DataModelBenchmark {
+    /** <code>true</code> to share the root scope. */
+    @Param({"false", "true"})
+    public boolean sharedRootScope;
+
+    /** Template of the data models. */
+    private DataModel template;
+    /** The data model created by the last invocation. */
+    private DataModel model;
+
+    @Setup(Level.Trial)
+    public void createTemplate() {
+        template = new CachingEcmaScriptDataModel(new ScriptCache(), sharedRootScope);
+    }
+
+    @Benchmark
+    public Object createSessionScope() throws Exception {
+        model = template.newInstance();
+        model.createScope();
+        return model.evaluateExpression("Math.max(1, 2)", Object.class);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteScope() {
+        model.deleteScope();
+        model = null;
+        while (Context.getCurrentContext() != null) {
+            Context.exit();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.dontpanic.riot.embeddedjvxml.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.dontpanic.riot.embeddedjvxml.EmbeddedServerTextCall;
+import org.jvoicexml.event.ErrorEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trip latency of <code>hears</code>, <code>say</code> and
+ * <code>enter</code> on the dialogs of the tests. Every invocation runs on
+ * a new call that is set up and ended outside of the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DialogBenchmark {
+    /** Documents of the workloads. */
+    private URI hello;
+    private URI dtmf;
+    private URI input;
+    /** The call of the current invocation. */
+    private EmbeddedServerTextCall call;
+
+    @Setup(Level.Trial)
+    public void loadWorkloads() throws IOException {
+        hello = Workloads.uri("hello.vxml");
+        dtmf = Workloads.uri("dtmf.vxml");
+        input = Workloads.uri("input.vxml");
+    }
+
+    @Setup(Level.Invocation)
+    public void newCall(final EngineState state) throws ErrorEvent, InterruptedException {
+        call = state.getEngine().newCall();
+    }
+
+    @TearDown(Level.Invocation)
+    public void endCall(final EngineState state) {
+        state.getEngine().endCall(call);
+        call = null;
+    }
+
+    @Benchmark
+    public void hears() {
+        call.call(hello);
+        call.hears("Hello World!");
+        call.hears("Goodbye!");
+    }
+
+    @Benchmark
+    public void enter() {
+        call.call(dtmf);
+        call.hears("Do you like this example? Please enter 1 for yes or 2 for no");
+        call.enter("1");
+        call.hears("You like this example.");
+    }
+
+    @Benchmark
+    public void say() {
+        call.call(input);
+        call.hears("Do you like this example?");
+        call.say("yes");
+        call.hears("You like this example.");
+    }
+}
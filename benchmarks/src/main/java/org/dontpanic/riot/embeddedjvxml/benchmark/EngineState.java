@@ -0,0 +1,48 @@
+package org.dontpanic.riot.embeddedjvxml.benchmark;
+
+import java.io.IOException;
+
+import org.dontpanic.riot.embeddedjvxml.EmbeddedJVoiceXml;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * An embedded JVoiceXML shared by all benchmark threads, with one session
+ * per thread. Run with <code>-p sessionPool=0,2</code> to compare sessions
+ * created on demand with sessions created ahead of time.
+ */
+@State(Scope.Benchmark)
+public class EngineState {
+    /** Number of sessions created ahead of time. */
+    @Param({"0"})
+    public int sessionPool;
+
+    /** The started interpreter. */
+    private EmbeddedJVoiceXml engine;
+
+    @Setup(Level.Trial)
+    public void start(final BenchmarkParams params)
+            throws IOException, InterruptedException {
+        engine = new EmbeddedJVoiceXml(params.getThreads() + sessionPool);
+        engine.setSessionPoolSize(sessionPool);
+        engine.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        engine.shutdown();
+    }
+
+    /**
+     * Retrieves the started interpreter.
+     * @return the interpreter
+     */
+    public EmbeddedJVoiceXml getEngine() {
+        return engine;
+    }
+}
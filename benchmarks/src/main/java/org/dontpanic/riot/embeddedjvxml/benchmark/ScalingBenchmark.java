@@ -0,0 +1,96 @@
+package org.dontpanic.riot.embeddedjvxml.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.dontpanic.riot.embeddedjvxml.EmbeddedJVoiceXml;
+import org.dontpanic.riot.embeddedjvxml.EmbeddedServerTextCall;
+import org.dontpanic.riot.embeddedjvxml.Threads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to run a number of concurrent calls of the hello dialog, each
+ * driven by its own platform or virtual thread. Virtual threads require
+ * Java 21.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScalingBenchmark {
+    /** Threads driving the calls. */
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    /** Number of concurrent calls. */
+    @Param({"64", "512"})
+    public int calls;
+
+    /** The dialog of the calls. */
+    private URI hello;
+    /** The started interpreter. */
+    private EmbeddedJVoiceXml engine;
+    /** One driver thread per call. */
+    private ExecutorService drivers;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException, InterruptedException {
+        final boolean virtual = "virtual".equals(threads);
+        if (virtual && !Threads.isVirtualThreadsAvailable()) {
+            throw new IllegalStateException("virtual threads require Java 21");
+        }
+        hello = Workloads.uri("hello.vxml");
+        engine = new EmbeddedJVoiceXml(calls);
+        engine.start();
+        drivers = Executors.newFixedThreadPool(calls,
+                Threads.newThreadFactory("ScalingBenchmark", virtual));
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        drivers.shutdownNow();
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public void concurrentCalls() throws InterruptedException, ExecutionException {
+        final List<Future<?>> results = new ArrayList<Future<?>>(calls);
+        for (int i = 0; i < calls; i++) {
+            results.add(drivers.submit(() -> {
+                final EmbeddedServerTextCall call = engine.newCall();
+                try {
+                    call.call(hello);
+                    call.hears("Hello World!");
+                    call.hears("Goodbye!");
+                } finally {
+                    engine.endCall(call);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+    }
+}
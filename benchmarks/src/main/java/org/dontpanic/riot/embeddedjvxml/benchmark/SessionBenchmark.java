@@ -0,0 +1,59 @@
+package org.dontpanic.riot.embeddedjvxml.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.dontpanic.riot.embeddedjvxml.EmbeddedServerTextCall;
+import org.jvoicexml.event.ErrorEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to create a session and construct the {@link EmbeddedServerTextCall}
+ * for it. The call is run to its end outside of the measurement, as
+ * JVoiceXML only returns the text platform of a session that ended.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SessionBenchmark {
+    /** The dialog to end the created calls with. */
+    private URI hello;
+    /** The call created by the last invocation. */
+    private EmbeddedServerTextCall call;
+
+    @Setup(Level.Trial)
+    public void loadWorkload() throws IOException {
+        hello = Workloads.uri("hello.vxml");
+    }
+
+    @Benchmark
+    public EmbeddedServerTextCall createSession(final EngineState state)
+            throws ErrorEvent, InterruptedException {
+        call = state.getEngine().newCall();
+        return call;
+    }
+
+    @TearDown(Level.Invocation)
+    public void endCall(final EngineState state) {
+        call.call(hello);
+        call.hears("Hello World!");
+        call.hears("Goodbye!");
+        state.getEngine().endCall(call);
+        call = null;
+    }
+}
@@ -0,0 +1,73 @@
+package org.dontpanic.riot.embeddedjvxml.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.dontpanic.riot.embeddedjvxml.EmbeddedTextConfiguration;
+import org.jvoicexml.JVoiceXmlMain;
+import org.jvoicexml.JVoiceXmlMainListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to start a {@link JVoiceXmlMain} with the
+ * {@link EmbeddedTextConfiguration}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+    /** The started interpreter. */
+    private JVoiceXmlMain jvxml;
+    /** Released when the interpreter terminated. */
+    private CountDownLatch shutdownLatch;
+
+    @Benchmark
+    public JVoiceXmlMain startup() throws InterruptedException {
+        final CountDownLatch startupLatch = new CountDownLatch(1);
+        final CountDownLatch terminatedLatch = new CountDownLatch(1);
+        shutdownLatch = terminatedLatch;
+        jvxml = new JVoiceXmlMain(new EmbeddedTextConfiguration());
+        jvxml.addListener(new JVoiceXmlMainListener() {
+            @Override
+            public void jvxmlStarted() {
+                startupLatch.countDown();
+            }
+
+            @Override
+            public void jvxmlTerminated() {
+                terminatedLatch.countDown();
+            }
+
+            @Override
+            public void jvxmlStartupError(final Throwable exception) {
+                startupLatch.countDown();
+            }
+        });
+        jvxml.start();
+        startupLatch.await();
+        return jvxml;
+    }
+
+    @TearDown(Level.Iteration)
+    public void shutdown() throws InterruptedException {
+        if (jvxml != null) {
+            jvxml.getDocumentServer().stop();
+            jvxml.shutdown();
+            shutdownLatch.await(1, TimeUnit.MINUTES);
+            jvxml = null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.dontpanic.riot.embeddedjvxml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.dontpanic.riot.embeddedjvxml.EmbeddedTagStrategyFactory;
+import org.jvoicexml.profile.TagStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link EmbeddedTagStrategyFactory#getTagStrategy(String)},
+ * which is called for every executed VoiceXML element. Run with
+ * <code>-prof gc</code> to see the allocation per lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TagStrategyBenchmark {
+    /** The tag to look up. */
+    @Param({"prompt", "#text", "if", "goto", "unknown"})
+    public String tag;
+
+    /** The factory under test. */
+    private EmbeddedTagStrategyFactory factory;
+
+    @Setup(Level.Trial)
+    public void createFactory() throws Exception {
+        factory = new EmbeddedTagStrategyFactory();
+    }
+
+    @Benchmark
+    public TagStrategy getTagStrategy() {
+        return factory.getTagStrategy(tag);
+    }
+}
@@ -0,0 +1,36 @@
+package org.dontpanic.riot.embeddedjvxml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.dontpanic.riot.embeddedjvxml.EmbeddedTagStrategyFactory;
+import org.dontpanic.riot.embeddedjvxml.TagStrategyRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of creating an {@link EmbeddedTagStrategyFactory}, which the
+ * configuration does during startup, compared to resolving the tag
+ * strategies by reflection, which every new factory used to do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TagStrategyRegistryBenchmark {
+
+    @Benchmark
+    public EmbeddedTagStrategyFactory newFactory() {
+        return new EmbeddedTagStrategyFactory();
+    }
+
+    @Benchmark
+    public TagStrategyRegistry loadRegistry() {
+        return TagStrategyRegistry.load();
+    }
+}
@@ -0,0 +1,61 @@
+package org.dontpanic.riot.embeddedjvxml.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The VoiceXML documents the benchmarks run. They are packaged with the
+ * benchmarks and copied to a temporary directory, as JVoiceXML only
+ * fetches documents from <code>file:</code> and <code>http:</code> URIs.
+ */
+public final class Workloads {
+    /** Files of a workload. */
+    private static final String[] FILES = {
+        "hello.vxml", "dtmf.vxml", "input.vxml", "yesno.srgs"
+    };
+
+    /** Directory holding the extracted files. */
+    private static Path directory;
+
+    private Workloads() {
+    }
+
+    /**
+     * Retrieves the URI of an extracted workload file.
+     * @param name name of the file, e.g. <code>hello.vxml</code>
+     * @return the <code>file:</code> URI of the file
+     * @throws IOException
+     *          error extracting the files
+     */
+    public static synchronized URI uri(final String name) throws IOException {
+        if (directory == null) {
+            directory = extract();
+        }
+        return directory.resolve(name).toUri();
+    }
+
+    /**
+     * Copies the workload files to a temporary directory.
+     * @return the directory
+     * @throws IOException
+     *          error copying the files
+     */
+    private static Path extract() throws IOException {
+        final Path target = Files.createTempDirectory("embeddedjvxml-workloads");
+        for (String file : FILES) {
+            try (InputStream in = Workloads.class.getResourceAsStream("/workloads/" + file)) {
+                if (in == null) {
+                    throw new IOException("workload not found: " + file);
+                }
+                Files.copy(in, target.resolve(file), StandardCopyOption.REPLACE_EXISTING);
+            }
+            target.resolve(file).toFile().deleteOnExit();
+        }
+        target.toFile().deleteOnExit();
+        return target;
+    }
+}
@@ -0,0 +1,137 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+import org.jvoicexml.client.text.TextListener;
+import org.jvoicexml.event.JVoiceXMLEvent;
+import org.jvoicexml.event.plain.ConnectionDisconnectHangupEvent;
+import org.jvoicexml.xml.ssml.SsmlDocument;
+
+/**
+ * Non-blocking counterpart of the
+ * {@link org.jvoicexml.voicexmlunit.InputMonitor}. Instead of parking the
+ * caller until JVoiceXML is ready to accept input, it hands out futures
+ * that are completed on the thread delivering the text server events.
+ *
+ * Each time JVoiceXML expects input, one waiting future is completed, as
+ * the caller of that future is expected to provide the input. A request for
+ * input is consumed by exactly one future, so blocking and asynchronous
+ * callers of a call can be mixed. Futures that are cancelled, e.g. after a
+ * timeout, do not consume a request.
+ */
+public class AsyncInputMonitor implements TextListener {
+    /** Futures waiting for JVoiceXML to expect input. */
+    private final Queue<CompletableFuture<Void>> pending;
+    /** <code>true</code> if JVoiceXML expects input nobody provided yet. */
+    private boolean expectingInput;
+    /** Caught event that ends all waiting. */
+    private JVoiceXMLEvent event;
+
+    /**
+     * Constructs a new object.
+     */
+    public AsyncInputMonitor() {
+        pending = new ArrayDeque<CompletableFuture<Void>>();
+    }
+
+    /**
+     * Retrieves a future that is completed once JVoiceXML is ready to accept
+     * input.
+     * @return future that completes when input is expected
+     */
+    public CompletableFuture<Void> whenExpectingInput() {
+        final CompletableFuture<Void> future = new CompletableFuture<Void>();
+        final JVoiceXMLEvent failure;
+        synchronized (pending) {
+            failure = event;
+            if (failure == null) {
+                if (expectingInput) {
+                    expectingInput = false;
+                } else {
+                    pending.add(future);
+                    return future;
+                }
+            }
+        }
+        if (failure == null) {
+            future.complete(null);
+        } else {
+            future.completeExceptionally(failure);
+        }
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void started() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void connected(final InetSocketAddress remote) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void outputSsml(final SsmlDocument document) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void expectingInput() {
+        CompletableFuture<Void> future;
+        do {
+            synchronized (pending) {
+                do {
+                    future = pending.poll();
+                } while (future != null && future.isDone());
+                if (future == null) {
+                    expectingInput = true;
+                    return;
+                }
+            }
+            // The future may have been cancelled in the meantime
+        } while (!future.complete(null));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void inputClosed() {
+        synchronized (pending) {
+            expectingInput = false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void disconnected() {
+        final Collection<CompletableFuture<Void>> waiting;
+        final JVoiceXMLEvent hangup = new ConnectionDisconnectHangupEvent();
+        synchronized (pending) {
+            event = hangup;
+            expectingInput = false;
+            waiting = new ArrayList<CompletableFuture<Void>>(pending);
+            pending.clear();
+        }
+        for (CompletableFuture<Void> future : waiting) {
+            future.completeExceptionally(hangup);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collection;
+
+import javax.sound.sampled.AudioInputStream;
+
+import org.jvoicexml.DocumentDescriptor;
+import org.jvoicexml.DocumentServer;
+import org.jvoicexml.FetchAttributes;
+import org.jvoicexml.GrammarDocument;
+import org.jvoicexml.event.error.BadFetchError;
+import org.jvoicexml.xml.vxml.VoiceXmlDocument;
+
+/**
+ * Document server that serves VoiceXML documents from a
+ * {@link DocumentCache} and grammars from a {@link GrammarCache}, so that
+ * documents fetched by one session are not fetched and parsed again by the
+ * next. All other requests are passed to the wrapped document server.
+ *
+ * Only plain fetches are cached. Requests carrying parameters, e.g. a
+ * <code>&lt;submit&gt;</code> with a <code>namelist</code>, are always
+ * passed on, as their result may depend on the parameters.
+ *
+ * With a {@link DocumentPrefetcher}, each document a session loads into
+ * the cache has its static targets fetched in the background: documents
+ * into the document cache, grammars into the grammar cache, and
+ * <code>http:</code> audio files through the wrapped server, which lets its
+ * scheme strategy revalidate them later. Only the targets of documents
+ * loaded by a session are prefetched, not those of prefetched documents.
+ * Targets are fetched without a session id, as they are shared by all
+ * sessions and the session that caused the prefetch may have ended by the
+ * time they are fetched.
+ */
+public class CachingDocumentServer implements DocumentServer {
+    /** The document server doing the actual work. */
+    private final DocumentServer server;
+    /** The parsed documents. */
+    private final DocumentCache documentCache;
+    /** The fetched grammars. */
+    private final GrammarCache grammarCache;
+    /** Fetches the targets of loaded documents, <code>null</code> if disabled. */
+    private final DocumentPrefetcher prefetcher;
+
+    /**
+     * Constructs a new object.
+     * @param server the document server doing the actual work
+     * @param documentCache the parsed documents, <code>null</code> to not
+     *          cache documents
+     * @param grammarCache the fetched grammars, <code>null</code> to not
+     *          cache grammars
+     */
+    public CachingDocumentServer(final DocumentServer server,
+                                 final DocumentCache documentCache,
+                                 final GrammarCache grammarCache) {
+        this(server, documentCache, grammarCache, null);
+    }
+
+    /**
+     * Constructs a new object.
+     * @param server the document server doing the actual work
+     * @param documentCache the parsed documents, <code>null</code> to not
+     *          cache documents
+     * @param grammarCache the fetched grammars, <code>null</code> to not
+     *          cache grammars
+     * @param prefetcher fetches the targets of loaded documents,
+     *          <code>null</code> to not prefetch
+     */
+    public CachingDocumentServer(final DocumentServer server,
+                                 final DocumentCache documentCache,
+                                 final GrammarCache grammarCache,
+                                 final DocumentPrefetcher prefetcher) {
+        this.server = server;
+        this.documentCache = documentCache;
+        this.grammarCache = grammarCache;
+        this.prefetcher = prefetcher;
+    }
+
+    /**
+     * Retrieves the cache of parsed documents.
+     * @return the document cache, <code>null</code> if documents are not
+     *          cached
+     */
+    public DocumentCache getDocumentCache() {
+        return documentCache;
+    }
+
+    /**
+     * Retrieves the cache of fetched grammars.
+     * @return the grammar cache, <code>null</code> if grammars are not
+     *          cached
+     */
+    public GrammarCache getGrammarCache() {
+        return grammarCache;
+    }
+
+    /**
+     * Retrieves the prefetcher of the targets of loaded documents.
+     * @return the prefetcher, <code>null</code> if targets are not
+     *          prefetched
+     */
+    public DocumentPrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start() throws Exception {
+        server.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VoiceXmlDocument getDocument(final String sessionId,
+                                        final DocumentDescriptor descriptor) throws BadFetchError {
+        return getDocument(sessionId, descriptor, prefetcher != null);
+    }
+
+    /**
+     * Retrieves a document from the cache, loading it on a miss.
+     * @param sessionId the id of the session, <code>null</code> for a
+     *          prefetch
+     * @param descriptor the document to retrieve
+     * @param prefetch <code>true</code> to prefetch the targets of the
+     *          document if it is loaded
+     * @return the document
+     * @throws BadFetchError
+     *          error loading the document
+     */
+    private VoiceXmlDocument getDocument(final String sessionId,
+                                         final DocumentDescriptor descriptor,
+                                         final boolean prefetch) throws BadFetchError {
+        final Collection<?> parameters = descriptor.getParameters();
+        if (documentCache == null || parameters != null && !parameters.isEmpty()) {
+            return server.getDocument(sessionId, descriptor);
+        }
+        return documentCache.getDocument(descriptor.getUri(), () -> {
+            final VoiceXmlDocument document = server.getDocument(sessionId, descriptor);
+            if (prefetch && document != null) {
+                prefetchTargets(descriptor.getUri(), document);
+            }
+            return document;
+        });
+    }
+
+    /**
+     * Schedules the static targets of a loaded document for prefetching.
+     * The targets of prefetched documents are not prefetched in turn.
+     * @param uri URI of the document
+     * @param document the loaded document
+     */
+    private void prefetchTargets(final URI uri, final VoiceXmlDocument document) {
+        for (DocumentPrefetcher.Target target
+                : DocumentPrefetcher.targetsOf(uri, document.getDocument())) {
+            final URI targetUri = target.getUri();
+            switch (target.getType()) {
+            case DOCUMENT:
+                prefetcher.prefetch(targetUri, () -> getDocument(null,
+                        new DocumentDescriptor(targetUri, DocumentDescriptor.MIME_TYPE_XML),
+                        false));
+                break;
+            case GRAMMAR:
+                if (grammarCache != null) {
+                    prefetcher.prefetch(targetUri, () -> getGrammarDocument(null,
+                            targetUri, new FetchAttributes()));
+                }
+                break;
+            case AUDIO:
+                final String scheme = targetUri.getScheme();
+                if ("http".equals(scheme) || "https".equals(scheme)) {
+                    prefetcher.prefetch(targetUri, () -> {
+                        close(server.getAudioInputStream(null, targetUri));
+                        return null;
+                    });
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * Closes a prefetched stream.
+     * @param in the stream, may be <code>null</code>
+     */
+    private static void close(final InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Nothing to do, the content was fetched already
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GrammarDocument getGrammarDocument(final String sessionId, final URI uri,
+                                              final FetchAttributes attributes) throws BadFetchError {
+        if (grammarCache == null) {
+            return server.getGrammarDocument(sessionId, uri, attributes);
+        }
+        return grammarCache.getDocument(uri,
+                () -> server.getGrammarDocument(sessionId, uri, attributes));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AudioInputStream getAudioInputStream(final String sessionId,
+                                                final URI uri) throws BadFetchError {
+        return server.getAudioInputStream(sessionId, uri);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getObject(final String sessionId, final DocumentDescriptor descriptor,
+                            final String type) throws BadFetchError {
+        return server.getObject(sessionId, descriptor, type);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public URI storeAudio(final AudioInputStream in) throws BadFetchError {
+        return server.storeAudio(in);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sessionClosed(final String sessionId) {
+        server.sessionClosed(sessionId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stop() {
+        server.stop();
+    }
+}
@@ -0,0 +1,292 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.lang.reflect.Field;
+
+import org.apache.log4j.Logger;
+import org.jvoicexml.event.error.SemanticError;
+import org.jvoicexml.interpreter.datamodel.DataModel;
+import org.jvoicexml.interpreter.datamodel.Scope;
+import org.jvoicexml.interpreter.datamodel.ecmascript.EcmaScriptDataModel;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EcmaError;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.JavaScriptException;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.WrappedException;
+
+/**
+ * ECMAScript data model that evaluates expressions from compiled scripts of
+ * a {@link ScriptCache} instead of compiling their source on every
+ * evaluation, and that optionally builds its scope chain on the
+ * {@link SharedRootScope} instead of initializing the standard objects
+ * for every session.
+ *
+ * The {@link EmbeddedTextConfiguration} only uses this data model if a
+ * script cache or the shared root scope is set. The original data model
+ * keeps its Rhino context and current scope private. They are accessed by
+ * reflection. If they cannot be found, a warning is logged,
+ * {@link #isSupported()} is <code>false</code> and the
+ * {@link EmbeddedTextConfiguration} falls back to the original data model.
+ * Evaluations the original data model still has to do, e.g. in a foreign
+ * Rhino context, are counted as bypasses of the {@link ScriptCache}.
+ */
+public class CachingEcmaScriptDataModel extends EcmaScriptDataModel {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(CachingEcmaScriptDataModel.class);
+
+    /** The field of the innermost scope, <code>null</code> if not found. */
+    private static final Field TOPMOST = findField(Scriptable.class, true, "topmostScope");
+    /** The field of the scope expressions run in, <code>null</code> if not kept. */
+    private static final Field CURRENT = findField(Scriptable.class, false, "scope");
+    /** The field of the Rhino context, <code>null</code> if not found. */
+    private static final Field CONTEXT = findField(Context.class, true, "context");
+
+    /** The compiled scripts, <code>null</code> to compile on every evaluation. */
+    private final ScriptCache scriptCache;
+    /** <code>true</code> if the scope chain starts at the shared root scope. */
+    private final boolean sharedRootScope;
+    /** The root scope of this session, <code>null</code> if not installed. */
+    private Scriptable sessionRoot;
+    /** The context entered for the session root, <code>null</code> if none. */
+    private Context sessionContext;
+
+    /**
+     * Constructs a new object.
+     * @param scriptCache the compiled scripts
+     */
+    public CachingEcmaScriptDataModel(final ScriptCache scriptCache) {
+        this(scriptCache, false);
+    }
+
+    /**
+     * Constructs a new object.
+     * @param scriptCache the compiled scripts, <code>null</code> to compile
+     *          on every evaluation
+     * @param sharedRootScope <code>true</code> to start the scope chain at
+     *          the {@link SharedRootScope}
+     */
+    public CachingEcmaScriptDataModel(final ScriptCache scriptCache,
+                                      final boolean sharedRootScope) {
+        this.scriptCache = scriptCache;
+        this.sharedRootScope = sharedRootScope;
+    }
+
+    /**
+     * Checks if the private state of the original data model was found, so
+     * that scripts can be run from the cache.
+     * @return <code>true</code> if this data model can do its work
+     */
+    public static boolean isSupported() {
+        return TOPMOST != null && CONTEXT != null;
+    }
+
+    /**
+     * Retrieves the cache of compiled scripts.
+     * @return the script cache, <code>null</code> if scripts are not cached
+     */
+    public ScriptCache getScriptCache() {
+        return scriptCache;
+    }
+
+    /**
+     * Checks if the scope chain starts at the shared root scope.
+     * @return <code>true</code> if the root scope is shared
+     */
+    public boolean isSharedRootScope() {
+        return sharedRootScope;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataModel newInstance() {
+        return new CachingEcmaScriptDataModel(scriptCache, sharedRootScope);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int createScope() {
+        prepareRootScope();
+        return super.createScope();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int createScope(final Scope scope) {
+        prepareRootScope();
+        return super.createScope(scope);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteScope() {
+        final int result = super.deleteScope();
+        releaseRootScope();
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteScope(final Scope scope) {
+        final int result = super.deleteScope(scope);
+        releaseRootScope();
+        return result;
+    }
+
+    /**
+     * Installs a child of the {@link SharedRootScope} as the topmost and
+     * the current scope before the first scope is created. The original
+     * data model then creates the session scope as a child of it, instead
+     * of initializing the standard objects itself.
+     *
+     * The Rhino context is entered here, as the original data model does
+     * for its own root scope, and exited by {@link #releaseRootScope()}.
+     */
+    private void prepareRootScope() {
+        if (!sharedRootScope || !isSupported() || read(CONTEXT) != null) {
+            return;
+        }
+        final Scriptable root = SharedRootScope.newSessionScope();
+        final Context context = Context.enter();
+        try {
+            CONTEXT.set(this, context);
+            TOPMOST.set(this, root);
+            if (CURRENT != null) {
+                CURRENT.set(this, root);
+            }
+        } catch (IllegalAccessException e) {
+            Context.exit();
+            throw new IllegalStateException("unable to install the shared root scope", e);
+        }
+        sessionRoot = root;
+        sessionContext = context;
+    }
+
+    /**
+     * Removes the installed root scope and exits the Rhino context once all
+     * scopes of the session have been deleted, so that the next scope
+     * starts a new session root.
+     */
+    private void releaseRootScope() {
+        if (sessionRoot == null) {
+            return;
+        }
+        final Object topmost = read(TOPMOST);
+        if (topmost != null && topmost != sessionRoot) {
+            return;
+        }
+        try {
+            TOPMOST.set(this, null);
+            if (CURRENT != null) {
+                CURRENT.set(this, null);
+            }
+            CONTEXT.set(this, null);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("unable to remove the shared root scope", e);
+        } finally {
+            if (Context.getCurrentContext() == sessionContext) {
+                Context.exit();
+            }
+            sessionRoot = null;
+            sessionContext = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Object> T evaluateExpression(final String expr,
+                                                   final Class<T> type) throws SemanticError {
+        if (scriptCache == null || expr == null) {
+            return super.evaluateExpression(expr, type);
+        }
+        Scriptable scope = (Scriptable) read(CURRENT);
+        if (scope == null) {
+            scope = (Scriptable) read(TOPMOST);
+        }
+        Context context = (Context) read(CONTEXT);
+        if (context == null) {
+            context = Context.getCurrentContext();
+        }
+        if (scope == null || context == null || context != Context.getCurrentContext()) {
+            scriptCache.bypassed();
+            return super.evaluateExpression(expr, type);
+        }
+        final Object value;
+        try {
+            final Script script = scriptCache.getScript(context, expr);
+            value = script.exec(context, scope);
+        } catch (WrappedException e) {
+            // A Java exception of a host object is not an error of the script
+            final Throwable cause = e.getWrappedException();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        } catch (EcmaError | EvaluatorException | JavaScriptException e) {
+            throw new SemanticError(e.getMessage(), e);
+        }
+        if (value == Context.getUndefinedValue()) {
+            return type.isInstance(value) ? (T) value : null;
+        }
+        try {
+            return (T) Context.jsToJava(value, type);
+        } catch (EvaluatorException e) {
+            throw new SemanticError(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a private field of this data model.
+     * @param field the field, may be <code>null</code>
+     * @return value of the field, <code>null</code> if it cannot be read
+     */
+    private Object read(final Field field) {
+        if (field == null) {
+            return null;
+        }
+        try {
+            return field.get(this);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks up a private field of the {@link EcmaScriptDataModel}.
+     * @param type type of the field
+     * @param required <code>true</code> to warn if the field is missing
+     * @param names candidate names of the field
+     * @return the field, <code>null</code> if none was found
+     */
+    private static Field findField(final Class<?> type, final boolean required,
+                                   final String... names) {
+        for (String name : names) {
+            try {
+                final Field field = EcmaScriptDataModel.class.getDeclaredField(name);
+                if (type.isAssignableFrom(field.getType())) {
+                    field.setAccessible(true);
+                    return field;
+                }
+            } catch (NoSuchFieldException | SecurityException e) {
+                LOGGER.debug("no field " + name + " in the data model");
+            }
+        }
+        if (required) {
+            LOGGER.warn("data model field not found: " + String.join("/", names));
+        }
+        return null;
+    }
+}
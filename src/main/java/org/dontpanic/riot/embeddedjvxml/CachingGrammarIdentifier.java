@@ -0,0 +1,44 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.jvoicexml.GrammarDocument;
+import org.jvoicexml.interpreter.grammar.GrammarIdentifier;
+import org.jvoicexml.xml.srgs.GrammarType;
+
+/**
+ * Grammar identifier that remembers the results of another identifier in
+ * a {@link GrammarCache}, so that the same grammar is not parsed again on
+ * every field activation.
+ */
+public class CachingGrammarIdentifier implements GrammarIdentifier {
+    /** The identifier doing the actual work. */
+    private final GrammarIdentifier identifier;
+    /** The cached results. */
+    private final GrammarCache grammarCache;
+
+    /**
+     * Constructs a new object.
+     * @param identifier the identifier doing the actual work
+     * @param grammarCache the cached results
+     */
+    public CachingGrammarIdentifier(final GrammarIdentifier identifier,
+                                    final GrammarCache grammarCache) {
+        this.identifier = identifier;
+        this.grammarCache = grammarCache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GrammarType identify(final GrammarDocument grammar) {
+        return grammarCache.identify(identifier, grammar);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GrammarType getSupportedType() {
+        return identifier.getSupportedType();
+    }
+}
@@ -0,0 +1,344 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+import org.jvoicexml.voicexmlunit.CallListener;
+import org.jvoicexml.xml.ssml.SsmlDocument;
+
+/**
+ * Delivers the events of a call to its listeners.
+ *
+ * Listeners are kept in copy-on-write lists, so they may be added and
+ * removed at any time, even while an event is delivered. A listener that
+ * throws is logged and counted, and the other listeners still get the
+ * event.
+ *
+ * Synchronous listeners are called on the thread of the call. Listeners
+ * added with {@link #addListener(CallListener)} are synchronous by default.
+ * After {@link #setAsynchronous(boolean) setAsynchronous(true)} they get
+ * their events from a bounded queue instead, in order, on a shared pool of
+ * daemon threads, so a slow listener does not slow down the call. If the
+ * queue is full, the oldest queued event is dropped.
+ */
+public class CallListenerDispatcher implements CallListener {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(CallListenerDispatcher.class);
+
+    /** Default capacity of the delivery queue. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** Threads delivering events to asynchronous listeners of all calls. */
+    private static final ExecutorService DELIVERY =
+            Executors.newCachedThreadPool(Threads.newThreadFactory("CallListenerDispatcher"));
+
+    /** Listeners called on the thread of the call. */
+    private final Collection<CallListener> synchronousListeners;
+    /** Listeners called from the delivery queue. */
+    private final Collection<CallListener> asynchronousListeners;
+    /** Events waiting for delivery to the asynchronous listeners. */
+    private final Queue<Consumer<CallListener>> queue;
+    /** <code>true</code> if new listeners are asynchronous. */
+    private volatile boolean asynchronous;
+    /** Max. number of queued events. */
+    private volatile int capacity;
+    /** <code>true</code> while a delivery task drains the queue. */
+    private boolean draining;
+    /** Largest number of queued events. */
+    private final AtomicInteger peakQueued;
+    /** Number of events dropped as the queue was full. */
+    private final LongAdder dropped;
+    /** Number of listener calls that threw. */
+    private final LongAdder failed;
+    /** Metrics of all calls, <code>null</code> if not recorded. */
+    private volatile CallMetrics metrics;
+
+    /**
+     * Constructs a new object.
+     */
+    public CallListenerDispatcher() {
+        synchronousListeners = new CopyOnWriteArrayList<CallListener>();
+        asynchronousListeners = new CopyOnWriteArrayList<CallListener>();
+        queue = new ArrayDeque<Consumer<CallListener>>();
+        capacity = DEFAULT_CAPACITY;
+        peakQueued = new AtomicInteger();
+        dropped = new LongAdder();
+        failed = new LongAdder();
+    }
+
+    /**
+     * Sets whether listeners added from now on get their events
+     * asynchronously.
+     * @param async <code>true</code> to deliver asynchronously
+     */
+    public void setAsynchronous(final boolean async) {
+        asynchronous = async;
+    }
+
+    /**
+     * Checks whether listeners added from now on get their events
+     * asynchronously.
+     * @return <code>true</code> if events are delivered asynchronously
+     */
+    public boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     * Sets the max. number of events waiting for asynchronous delivery.
+     * @param max the capacity of the queue
+     */
+    public void setCapacity(final int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + max);
+        }
+        capacity = max;
+    }
+
+    /**
+     * Sets the metrics that count dropped events and failed listener calls
+     * of all calls.
+     * @param callMetrics the metrics to count to
+     */
+    public void setMetrics(final CallMetrics callMetrics) {
+        metrics = callMetrics;
+    }
+
+    /**
+     * Adds a listener, asynchronous if {@link #isAsynchronous()}.
+     * @param listener the listener to add
+     */
+    public void addListener(final CallListener listener) {
+        if (asynchronous) {
+            asynchronousListeners.add(listener);
+        } else {
+            synchronousListeners.add(listener);
+        }
+    }
+
+    /**
+     * Adds a listener that is always called on the thread of the call, e.g.
+     * because it takes timestamps.
+     * @param listener the listener to add
+     */
+    public void addSynchronousListener(final CallListener listener) {
+        synchronousListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     * @param listener the listener to remove
+     */
+    public void removeListener(final CallListener listener) {
+        synchronousListeners.remove(listener);
+        asynchronousListeners.remove(listener);
+    }
+
+    /**
+     * Delivers an event to all listeners.
+     * @param event calls the listener method of the event
+     */
+    private void dispatch(final Consumer<CallListener> event) {
+        for (CallListener listener : synchronousListeners) {
+            deliver(listener, event);
+        }
+        if (asynchronousListeners.isEmpty()) {
+            return;
+        }
+        final boolean schedule;
+        synchronized (queue) {
+            if (queue.size() >= capacity) {
+                queue.poll();
+                dropped.increment();
+                final CallMetrics callMetrics = metrics;
+                if (callMetrics != null) {
+                    callMetrics.listenerEventDropped();
+                }
+            }
+            queue.add(event);
+            peakQueued.accumulateAndGet(queue.size(), Math::max);
+            schedule = !draining;
+            draining = true;
+        }
+        if (schedule) {
+            DELIVERY.execute(this::drain);
+        }
+    }
+
+    /**
+     * Delivers the queued events to the asynchronous listeners until the
+     * queue is empty.
+     */
+    private void drain() {
+        while (true) {
+            final Consumer<CallListener> event;
+            synchronized (queue) {
+                event = queue.poll();
+                if (event == null) {
+                    draining = false;
+                    queue.notifyAll();
+                    return;
+                }
+            }
+            for (CallListener listener : asynchronousListeners) {
+                deliver(listener, event);
+            }
+        }
+    }
+
+    /**
+     * Delivers an event to a single listener, isolating its failures.
+     * @param listener the listener
+     * @param event calls the listener method of the event
+     */
+    private void deliver(final CallListener listener, final Consumer<CallListener> event) {
+        try {
+            event.accept(listener);
+        } catch (RuntimeException | AssertionError e) {
+            failed.increment();
+            final CallMetrics callMetrics = metrics;
+            if (callMetrics != null) {
+                callMetrics.listenerFailed();
+            }
+            LOGGER.warn("call listener " + listener + " failed", e);
+        }
+    }
+
+    /**
+     * Waits until all queued events were delivered.
+     * @param timeout max. time to wait in msec
+     * @return <code>true</code> if all events were delivered
+     * @throws InterruptedException
+     *          interrupted while waiting
+     */
+    public boolean awaitDelivery(final long timeout) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        synchronized (queue) {
+            while (draining) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                queue.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the number of events waiting for asynchronous delivery.
+     * @return number of queued events
+     */
+    public int getQueued() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Retrieves the largest number of events that waited for asynchronous
+     * delivery at the same time.
+     * @return peak number of queued events
+     */
+    public int getPeakQueued() {
+        return peakQueued.get();
+    }
+
+    /**
+     * Retrieves the number of events dropped as the queue overflowed.
+     * @return number of dropped events
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Retrieves the number of listener calls that threw.
+     * @return number of failed listener calls
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void called(final URI uri) {
+        dispatch(listener -> listener.called(uri));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void heard(final SsmlDocument output) {
+        dispatch(listener -> listener.heard(output));
+    }
+
+    /**
+     * Delivers an output to all listeners, as a prompt to the
+     * {@link PromptListener}s and as its document to the others.
+     * @param output the output
+     */
+    public void heard(final Prompt output) {
+        dispatch(listener -> {
+            if (listener instanceof PromptListener) {
+                ((PromptListener) listener).heard(output);
+            } else {
+                listener.heard(output.getDocument());
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void said(final String utterance) {
+        dispatch(listener -> listener.said(utterance));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void entered(final String digits) {
+        dispatch(listener -> listener.entered(digits));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void error(final AssertionError error) {
+        dispatch(listener -> listener.error(error));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void hungup() {
+        dispatch(CallListener::hungup);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "CallListenerDispatcher[queued=" + getQueued() + ", peak=" + getPeakQueued()
+                + ", dropped=" + getDropped() + ", failed=" + getFailed() + "]";
+    }
+}
@@ -0,0 +1,267 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+import org.jvoicexml.event.JVoiceXMLEvent;
+
+/**
+ * Figures of all calls of an embedded JVoiceXML, exported via JMX.
+ *
+ * The figures are recorded by a {@link CallMetricsListener} per call, by
+ * the call itself for the time it waits for JVoiceXML to expect input and
+ * by its {@link OutputMessageBuffer} for the time from an input to the
+ * output answering it, see
+ * {@link EmbeddedServerTextCall#setMetrics(CallMetrics)}. Latencies are kept
+ * in lock-free {@link LatencyHistogram}s.
+ */
+public class CallMetrics implements CallMetricsMXBean {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(CallMetrics.class);
+
+    /** Domain of the MBean names. */
+    public static final String DOMAIN = "org.dontpanic.riot.embeddedjvxml";
+
+    /** Number of started calls. */
+    private final LongAdder calls;
+    /** Number of hung up calls. */
+    private final LongAdder hungup;
+    /** Time from an input of a call to the next output. */
+    private final LatencyHistogram inputToPrompt;
+    /** Time waited for JVoiceXML to expect input. */
+    private final LatencyHistogram inputWait;
+    /** Time from the start of a call to its first output. */
+    private final LatencyHistogram firstOutput;
+    /** Errors by event type. */
+    private final ConcurrentMap<String, LongAdder> errors;
+    /** Number of listener events dropped as a delivery queue overflowed. */
+    private final LongAdder droppedListenerEvents;
+    /** Number of listener calls that threw. */
+    private final LongAdder failedListenerCalls;
+    /** Name this object is registered with, <code>null</code> if not registered. */
+    private ObjectName objectName;
+
+    /**
+     * Constructs a new object.
+     */
+    public CallMetrics() {
+        calls = new LongAdder();
+        hungup = new LongAdder();
+        inputToPrompt = new LatencyHistogram();
+        inputWait = new LatencyHistogram();
+        firstOutput = new LatencyHistogram();
+        errors = new ConcurrentHashMap<String, LongAdder>();
+        droppedListenerEvents = new LongAdder();
+        failedListenerCalls = new LongAdder();
+    }
+
+    /**
+     * Registers this object with the platform MBean server.
+     * @param name value of the <code>name</code> key of the MBean name
+     * @throws JMException
+     *          error registering
+     */
+    public synchronized void register(final String name) throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName mbeanName = new ObjectName(DOMAIN + ":type=CallMetrics,name="
+                + ObjectName.quote(name));
+        server.registerMBean(this, mbeanName);
+        objectName = mbeanName;
+    }
+
+    /**
+     * Removes this object from the platform MBean server.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOGGER.warn("error unregistering " + objectName, e);
+        }
+        objectName = null;
+    }
+
+    /**
+     * Counts a started call.
+     */
+    public void callStarted() {
+        calls.increment();
+    }
+
+    /**
+     * Counts a hung up call.
+     */
+    public void callHungup() {
+        hungup.increment();
+    }
+
+    /**
+     * Records the time from an input of a call to the next output.
+     * @param nanos the time in nsec
+     */
+    public void recordInputToPrompt(final long nanos) {
+        inputToPrompt.recordNanos(nanos);
+    }
+
+    /**
+     * Records the time a call waited for JVoiceXML to expect input.
+     * @param nanos the time in nsec
+     */
+    public void recordInputWait(final long nanos) {
+        inputWait.recordNanos(nanos);
+    }
+
+    /**
+     * Records the time from the start of a call to its first output.
+     * @param nanos the time in nsec
+     */
+    public void recordFirstOutput(final long nanos) {
+        firstOutput.recordNanos(nanos);
+    }
+
+    /**
+     * Counts an error of a call.
+     * @param error the error as reported to the call listeners
+     */
+    public void recordError(final Throwable error) {
+        errors.computeIfAbsent(typeOf(error), key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Counts a listener event dropped as a delivery queue overflowed.
+     */
+    public void listenerEventDropped() {
+        droppedListenerEvents.increment();
+    }
+
+    /**
+     * Counts a listener call that threw.
+     */
+    public void listenerFailed() {
+        failedListenerCalls.increment();
+    }
+
+    /**
+     * Determines the event type of an error.
+     * @param error the error
+     * @return type of the JVoiceXML event causing the error, or the name of
+     *          the exception class
+     */
+    private static String typeOf(final Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof AssertionError && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof JVoiceXMLEvent) {
+            return ((JVoiceXMLEvent) cause).getEventType();
+        }
+        return cause.getClass().getSimpleName();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getActiveCalls() {
+        return calls.sum() - hungup.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LatencySummary getInputToPrompt() {
+        return LatencySummary.of(inputToPrompt);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LatencySummary getInputWait() {
+        return LatencySummary.of(inputWait);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LatencySummary getFirstOutput() {
+        return LatencySummary.of(firstOutput);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getErrors() {
+        final Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> entry : errors.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDroppedListenerEvents() {
+        return droppedListenerEvents.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getFailedListenerCalls() {
+        return failedListenerCalls.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        calls.reset();
+        hungup.reset();
+        inputToPrompt.reset();
+        inputWait.reset();
+        firstOutput.reset();
+        errors.clear();
+        droppedListenerEvents.reset();
+        failedListenerCalls.reset();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "calls=" + getCalls() + ", active=" + getActiveCalls()
+                + ", inputToPrompt[" + inputToPrompt + "], inputWait[" + inputWait
+                + "], firstOutput[" + firstOutput + "], errors=" + getErrors()
+                + ", droppedListenerEvents=" + getDroppedListenerEvents()
+                + ", failedListenerCalls=" + getFailedListenerCalls();
+    }
+}
@@ -0,0 +1,99 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.net.URI;
+
+import org.jvoicexml.xml.ssml.SsmlDocument;
+
+/**
+ * Call listener that records the figures of a single call into the
+ * {@link CallMetrics}. An instance must not be shared by several calls.
+ *
+ * The time from an input to the next output is not recorded here, as the
+ * listeners hear an output only when the caller asks for it. The
+ * {@link OutputMessageBuffer} records it when the output arrives.
+ */
+public class CallMetricsListener implements PromptListener {
+    /** The metrics to record to. */
+    private final CallMetrics metrics;
+    /** Time the call was started in nsec, 0 if not started. */
+    private volatile long calledNanos;
+    /** <code>true</code> if the call had an output. */
+    private volatile boolean answered;
+
+    /**
+     * Constructs a new object.
+     * @param metrics the metrics to record to
+     */
+    public CallMetricsListener(final CallMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void called(final URI uri) {
+        calledNanos = System.nanoTime();
+        answered = false;
+        metrics.callStarted();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void heard(final SsmlDocument output) {
+        outputHeard();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void heard(final Prompt output) {
+        outputHeard();
+    }
+
+    /**
+     * Records the time to the first output of the call.
+     */
+    private void outputHeard() {
+        if (!answered && calledNanos != 0) {
+            metrics.recordFirstOutput(System.nanoTime() - calledNanos);
+        }
+        answered = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void said(final String utterance) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void entered(final String digits) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void error(final AssertionError error) {
+        metrics.recordError(error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void hungup() {
+        if (calledNanos != 0) {
+            metrics.callHungup();
+            calledNanos = 0;
+        }
+    }
+}
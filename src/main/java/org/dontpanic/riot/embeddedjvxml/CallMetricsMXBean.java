@@ -0,0 +1,64 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link CallMetrics}. Latencies are in
+ * &micro;sec.
+ */
+public interface CallMetricsMXBean {
+    /**
+     * Retrieves the number of started calls.
+     * @return number of started calls
+     */
+    long getCalls();
+
+    /**
+     * Retrieves the number of calls started and not yet hung up.
+     * @return number of active calls
+     */
+    long getActiveCalls();
+
+    /**
+     * Retrieves the time from an input of a call to the next output, i.e.
+     * the time JVoiceXML took to respond.
+     * @return input-to-prompt latencies
+     */
+    LatencySummary getInputToPrompt();
+
+    /**
+     * Retrieves the time calls waited for JVoiceXML to expect input.
+     * @return input wait latencies
+     */
+    LatencySummary getInputWait();
+
+    /**
+     * Retrieves the time from the start of a call to its first output.
+     * @return first output latencies
+     */
+    LatencySummary getFirstOutput();
+
+    /**
+     * Retrieves the number of errors by event type.
+     * @return errors by event type
+     */
+    Map<String, Long> getErrors();
+
+    /**
+     * Retrieves the number of events not delivered to asynchronous call
+     * listeners as their queue overflowed.
+     * @return number of dropped listener events
+     */
+    long getDroppedListenerEvents();
+
+    /**
+     * Retrieves the number of call listener calls that threw.
+     * @return number of failed listener calls
+     */
+    long getFailedListenerCalls();
+
+    /**
+     * Clears all recorded figures.
+     */
+    void reset();
+}
@@ -0,0 +1,205 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.jvoicexml.voicexmlunit.Call;
+
+/**
+ * A scripted dialog to drive a call, e.g. for load generation.
+ *
+ * A script is a text file with one step per line. Empty lines and lines
+ * starting with <code>#</code> are ignored. Steps are
+ * <pre>
+ * call  &lt;uri&gt;        calls the VoiceXML document, relative to the script
+ * hears &lt;utterance&gt;  expects the next output
+ * say   &lt;utterance&gt;  sends spoken input
+ * enter &lt;digits&gt;     enters DTMF input
+ * </pre>
+ */
+public class DialogScript {
+    /** Actions of a step. */
+    public enum Action {
+        /** Calls a document. */
+        CALL,
+        /** Expects an output. */
+        HEARS,
+        /** Sends spoken input. */
+        SAY,
+        /** Enters DTMF input. */
+        ENTER
+    }
+
+    /** Name of the script. */
+    private final String name;
+    /** The steps in order of execution. */
+    private final List<Step> steps;
+
+    /**
+     * Constructs a new object.
+     * @param name name of the script
+     * @param steps the steps in order of execution
+     */
+    public DialogScript(final String name, final List<Step> steps) {
+        this.name = name;
+        this.steps = Collections.unmodifiableList(new ArrayList<Step>(steps));
+    }
+
+    /**
+     * Loads a script from a file.
+     * @param file the script file
+     * @return the loaded script
+     * @throws IOException
+     *          error reading the file or syntax error in the script
+     */
+    public static DialogScript load(final File file) throws IOException {
+        final List<Step> steps = new ArrayList<Step>();
+        final URI base = file.toURI();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            String line = reader.readLine();
+            while (line != null) {
+                lineNumber++;
+                final String trimmed = line.trim();
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    steps.add(parseStep(base, trimmed, file, lineNumber));
+                }
+                line = reader.readLine();
+            }
+        }
+        return new DialogScript(file.getName(), steps);
+    }
+
+    /**
+     * Parses a single step.
+     * @param base URI to resolve documents against
+     * @param line the trimmed line
+     * @param file the script file for error messages
+     * @param lineNumber the line number for error messages
+     * @return the parsed step
+     * @throws IOException
+     *          syntax error
+     */
+    private static Step parseStep(final URI base, final String line,
+                                  final File file, final int lineNumber) throws IOException {
+        final int separator = line.indexOf(' ');
+        final String keyword = separator < 0 ? line : line.substring(0, separator);
+        final String argument = separator < 0 ? "" : line.substring(separator + 1).trim();
+        final Action action;
+        try {
+            action = Action.valueOf(keyword.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ":" + lineNumber + ": unknown step '" + keyword + "'");
+        }
+        if (action == Action.CALL) {
+            return new Step(action, base.resolve(argument).toString());
+        }
+        return new Step(action, argument);
+    }
+
+    /**
+     * Runs the script on the given call.
+     * @param call the call to drive
+     * @param timeout max. time to wait for each output or input in msec
+     * @param statistics receives the latencies of the outputs and inputs
+     * @throws AssertionError
+     *          the dialog did not behave as scripted
+     */
+    public void run(final Call call, final long timeout, final LoadStatistics statistics) {
+        long last = System.nanoTime();
+        for (Step step : steps) {
+            switch (step.getAction()) {
+            case CALL:
+                call.call(URI.create(step.getArgument()));
+                break;
+            case HEARS:
+                call.hears(step.getArgument(), timeout);
+                break;
+            case SAY:
+                call.say(step.getArgument(), timeout);
+                break;
+            case ENTER:
+                call.enter(step.getArgument(), timeout);
+                break;
+            default:
+                throw new IllegalStateException("unknown action " + step.getAction());
+            }
+            final long now = System.nanoTime();
+            if (step.getAction() == Action.HEARS) {
+                statistics.getPrompts().recordNanos(now - last);
+            } else if (step.getAction() != Action.CALL) {
+                statistics.getInputs().recordNanos(now - last);
+            }
+            last = now;
+        }
+    }
+
+    /**
+     * Retrieves the name of the script.
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Retrieves the steps of the script.
+     * @return the steps in order of execution
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * A single step of a script.
+     */
+    public static final class Step {
+        /** The action. */
+        private final Action action;
+        /** The argument of the action. */
+        private final String argument;
+
+        /**
+         * Constructs a new step.
+         * @param action the action
+         * @param argument the argument of the action
+         */
+        public Step(final Action action, final String argument) {
+            this.action = action;
+            this.argument = argument;
+        }
+
+        /**
+         * Retrieves the action.
+         * @return the action
+         */
+        public Action getAction() {
+            return action;
+        }
+
+        /**
+         * Retrieves the argument of the action.
+         * @return the argument, a resolved URI for {@link Action#CALL}
+         */
+        public String getArgument() {
+            return argument;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return action.name().toLowerCase(Locale.ENGLISH) + " " + argument;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+import org.jvoicexml.event.error.BadFetchError;
+import org.jvoicexml.xml.vxml.VoiceXmlDocument;
+import org.w3c.dom.Document;
+
+/**
+ * Cache of parsed VoiceXML documents shared by all sessions.
+ *
+ * Documents are keyed by their URI without fragment. An entry is only used
+ * while the document is unchanged: for <code>file:</code> URIs the
+ * modification time and size of the file are compared. Documents with
+ * <code>http:</code> URIs are used for a short freshness time without
+ * asking the server and loaded again afterwards. Loading them again is
+ * cheap with the {@link PooledHttpSchemeStrategy}, which revalidates the
+ * document with a conditional <code>GET</code> on a pooled connection.
+ * Documents with other URIs are not cached.
+ *
+ * The DOM of a cached document is never handed out. Each session gets a
+ * deep copy, which is much cheaper than fetching and parsing the document
+ * again and leaves the cached DOM untouched by the interpreter.
+ */
+public class DocumentCache {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(DocumentCache.class);
+
+    /** Version of HTTP documents, which are cached for their freshness time. */
+    static final String HTTP_VERSION = "http";
+
+    /** Default max. number of cached documents. */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    /** Default time an HTTP document is used without asking the server in msec. */
+    public static final long DEFAULT_HTTP_FRESHNESS = 5000;
+
+    /**
+     * Loads a document if it is not cached.
+     * @param <T> type of the document
+     */
+    public interface Loader<T> {
+        /**
+         * Fetches and parses the document.
+         * @return the loaded document
+         * @throws BadFetchError
+         *          error loading the document
+         */
+        T load() throws BadFetchError;
+    }
+
+    /** The cached documents. */
+    private final LruCache<URI, Entry> documents;
+    /** Number of requests served from the cache. */
+    private final LongAdder hits;
+    /** Number of requests that had to load the document. */
+    private final LongAdder misses;
+    /** Number of cached documents found to be outdated or expired. */
+    private final LongAdder invalidations;
+    /** Time an HTTP document is used without asking the server in nsec. */
+    private volatile long httpFreshness;
+
+    /**
+     * Constructs a cache of the default size.
+     */
+    public DocumentCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructs a new object.
+     * @param maxEntries max. number of cached documents
+     */
+    public DocumentCache(final int maxEntries) {
+        documents = new LruCache<URI, Entry>(maxEntries);
+        hits = new LongAdder();
+        misses = new LongAdder();
+        invalidations = new LongAdder();
+        httpFreshness = TimeUnit.MILLISECONDS.toNanos(DEFAULT_HTTP_FRESHNESS);
+    }
+
+    /**
+     * Sets the time a document fetched over HTTP is used without asking the
+     * server whether it changed.
+     * @param freshness the time in msec, 0 to not cache HTTP documents
+     */
+    public void setHttpFreshness(final long freshness) {
+        httpFreshness = TimeUnit.MILLISECONDS.toNanos(freshness);
+    }
+
+    /**
+     * Retrieves a copy of the document with the given URI, loading it if it
+     * is not cached or outdated.
+     * @param uri URI of the document
+     * @param loader loads the document on a miss
+     * @return the document
+     * @throws BadFetchError
+     *          error loading the document
+     */
+    public VoiceXmlDocument getDocument(final URI uri,
+                                        final Loader<VoiceXmlDocument> loader) throws BadFetchError {
+        final URI key = keyOf(uri);
+        final String version = versionOf(key);
+        if (version == null || HTTP_VERSION.equals(version) && httpFreshness == 0) {
+            misses.increment();
+            return loader.load();
+        }
+        final Entry entry = documents.get(key);
+        if (entry != null) {
+            if (entry.isCurrent(version)) {
+                hits.increment();
+                return entry.copy();
+            }
+            invalidations.increment();
+            documents.remove(key);
+            LOGGER.debug("cached document outdated: " + key);
+        }
+        misses.increment();
+        final VoiceXmlDocument document = loader.load();
+        if (document != null) {
+            // The session owns the loaded document, the cache keeps a copy
+            documents.put(key, new Entry(version, System.nanoTime() + httpFreshness,
+                    copy(document)));
+        }
+        return document;
+    }
+
+    /**
+     * Checks if a current version of the document with the given URI is
+     * cached.
+     * @param uri URI of the document
+     * @return <code>true</code> if the document is cached and unchanged
+     */
+    public boolean contains(final URI uri) {
+        final URI key = keyOf(uri);
+        final Entry entry = documents.get(key);
+        return entry != null && entry.isCurrent(versionOf(key));
+    }
+
+    /**
+     * Creates a deep copy of a document. Copying is serialized on the
+     * source, as the DOM implementation may expand deferred nodes while
+     * reading. The document URI is not cloned by the DOM and is copied
+     * explicitly.
+     * @param document the document to copy
+     * @return the copy
+     */
+    static VoiceXmlDocument copy(final VoiceXmlDocument document) {
+        synchronized (document) {
+            final Document source = document.getDocument();
+            final Document dom = (Document) source.cloneNode(true);
+            dom.setDocumentURI(source.getDocumentURI());
+            return new VoiceXmlDocument(dom);
+        }
+    }
+
+    /**
+     * Removes all cached documents.
+     */
+    public void clear() {
+        documents.clear();
+    }
+
+    /**
+     * Determines the cache key of a URI.
+     * @param uri the URI
+     * @return the URI without fragment
+     */
+    private static URI keyOf(final URI uri) {
+        if (uri.getFragment() == null) {
+            return uri;
+        }
+        try {
+            return new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null);
+        } catch (URISyntaxException e) {
+            return uri;
+        }
+    }
+
+    /**
+     * Determines the current version of the document with the given URI.
+     * @param uri URI of the document
+     * @return version of the document, {@link #HTTP_VERSION} for documents
+     *          fetched over HTTP, <code>null</code> if it cannot be
+     *          determined and the document must not be cached
+     */
+    static String versionOf(final URI uri) {
+        final String scheme = uri.getScheme();
+        if ("file".equals(scheme)) {
+            final File file = new File(uri);
+            if (!file.isFile()) {
+                return null;
+            }
+            return file.lastModified() + ":" + file.length();
+        }
+        if ("http".equals(scheme) || "https".equals(scheme)) {
+            return HTTP_VERSION;
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the number of cached documents.
+     * @return number of cached documents
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Retrieves the number of requests served from the cache.
+     * @return number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Retrieves the number of requests that had to load the document.
+     * @return number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Retrieves the number of cached documents found to be outdated or
+     * expired.
+     * @return number of invalidations
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Retrieves the number of documents evicted to make room.
+     * @return number of evictions
+     */
+    public long getEvictions() {
+        return documents.getEvictions();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "DocumentCache[size=" + size() + ", hits=" + getHits()
+                + ", misses=" + getMisses() + ", invalidations=" + getInvalidations()
+                + ", evictions=" + getEvictions() + "]";
+    }
+
+    /**
+     * A cached document.
+     */
+    private static final class Entry {
+        /** Version of the document when it was loaded. */
+        private final String version;
+        /** End of the freshness time of HTTP documents in nsec. */
+        private final long expires;
+        /** The parsed document. */
+        private final VoiceXmlDocument document;
+
+        Entry(final String version, final long expires, final VoiceXmlDocument document) {
+            this.version = version;
+            this.expires = expires;
+            this.document = document;
+        }
+
+        /**
+         * Checks if the cached document may be used.
+         * @param current the current version of the document
+         * @return <code>true</code> if the document is unchanged or, if
+         *          fetched over HTTP, still fresh
+         */
+        boolean isCurrent(final String current) {
+            if (HTTP_VERSION.equals(version)) {
+                return HTTP_VERSION.equals(current) && System.nanoTime() - expires < 0;
+            }
+            return version.equals(current);
+        }
+
+        /**
+         * Creates a copy of the cached document for a session.
+         * @return the copy
+         */
+        VoiceXmlDocument copy() {
+            return DocumentCache.copy(document);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+import org.jvoicexml.event.error.BadFetchError;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Fetches the documents a VoiceXML document may continue with before the
+ * interpreter asks for them.
+ *
+ * A document names its static targets in attributes like
+ * <code>&lt;goto next="..."&gt;</code> or
+ * <code>&lt;grammar src="..."&gt;</code>. The {@link CachingDocumentServer}
+ * schedules them here when it loads a document, and they are fetched in the
+ * background into the caches, so that the transition finds them warm.
+ * Targets computed by expressions, targets with a <code>namelist</code> and
+ * <code>POST</code> submits are not prefetched, as their result depends on
+ * the state of the dialog.
+ *
+ * Fetches run on a small pool of daemon threads with a bounded queue.
+ * Targets that do not fit into the queue are skipped, and a target is not
+ * fetched twice at the same time.
+ */
+public class DocumentPrefetcher {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(DocumentPrefetcher.class);
+
+    /** Default number of fetching threads. */
+    public static final int DEFAULT_THREADS = 2;
+
+    /** Default max. number of targets waiting to be fetched. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /** Time idle threads are kept in sec. */
+    private static final long KEEP_ALIVE = 30;
+
+    /** Kinds of targets. */
+    public enum Type {
+        /** A VoiceXML document. */
+        DOCUMENT,
+        /** A grammar. */
+        GRAMMAR,
+        /** An audio file. */
+        AUDIO
+    }
+
+    /**
+     * A static target of a document.
+     */
+    public static final class Target {
+        /** Absolute URI of the target without fragment. */
+        private final URI uri;
+        /** Kind of the target. */
+        private final Type type;
+
+        /**
+         * Constructs a new object.
+         * @param uri absolute URI of the target
+         * @param type kind of the target
+         */
+        Target(final URI uri, final Type type) {
+            this.uri = uri;
+            this.type = type;
+        }
+
+        /**
+         * Retrieves the URI of the target.
+         * @return absolute URI without fragment
+         */
+        public URI getUri() {
+            return uri;
+        }
+
+        /**
+         * Retrieves the kind of the target.
+         * @return the type
+         */
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return type + " " + uri;
+        }
+    }
+
+    /** The threads fetching the targets. */
+    private final ThreadPoolExecutor executor;
+    /** URIs currently waiting or being fetched. */
+    private final Set<URI> inFlight;
+    /** Number of fetched targets. */
+    private final LongAdder fetched;
+    /** Number of targets that could not be fetched. */
+    private final LongAdder failed;
+    /** Number of targets skipped as the queue was full. */
+    private final LongAdder skipped;
+
+    /**
+     * Constructs a prefetcher with the default number of threads and queue
+     * capacity.
+     */
+    public DocumentPrefetcher() {
+        this(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructs a new object.
+     * @param threads max. number of concurrent fetches
+     * @param queueCapacity max. number of targets waiting to be fetched
+     */
+    public DocumentPrefetcher(final int threads, final int queueCapacity) {
+        executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                Threads.newThreadFactory("DocumentPrefetcher"));
+        executor.allowCoreThreadTimeOut(true);
+        inFlight = ConcurrentHashMap.newKeySet();
+        fetched = new LongAdder();
+        failed = new LongAdder();
+        skipped = new LongAdder();
+    }
+
+    /**
+     * Schedules the fetch of a target unless it is already scheduled.
+     * @param uri URI of the target
+     * @param loader fetches the target into its cache
+     */
+    public void prefetch(final URI uri, final DocumentCache.Loader<?> loader) {
+        if (!inFlight.add(uri)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    loader.load();
+                    fetched.increment();
+                    LOGGER.debug("prefetched " + uri);
+                } catch (BadFetchError | RuntimeException e) {
+                    failed.increment();
+                    LOGGER.debug("unable to prefetch " + uri, e);
+                } finally {
+                    inFlight.remove(uri);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(uri);
+            skipped.increment();
+        }
+    }
+
+    /**
+     * Determines the static targets of a VoiceXML document.
+     * @param base URI of the document
+     * @param document the DOM of the document
+     * @return the targets in document order, each URI at most once
+     */
+    public static List<Target> targetsOf(final URI base, final Document document) {
+        final Map<URI, Target> targets = new LinkedHashMap<URI, Target>();
+        final URI documentUri = baseOf(base, document);
+        final NodeList elements = document.getElementsByTagName("*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            final Element element = (Element) elements.item(i);
+            String name = element.getLocalName();
+            if (name == null) {
+                final String tagName = element.getTagName();
+                name = tagName.substring(tagName.indexOf(':') + 1);
+            }
+            final Target target = targetOf(documentUri, element, name);
+            if (target != null && !targets.containsKey(target.getUri())) {
+                targets.put(target.getUri(), target);
+            }
+        }
+        return new ArrayList<Target>(targets.values());
+    }
+
+    /**
+     * Determines the static target of an element.
+     * @param base URI the targets are resolved against
+     * @param element the element
+     * @param name local name of the element
+     * @return the target, <code>null</code> if the element has no static
+     *          target in another document
+     */
+    private static Target targetOf(final URI base, final Element element, final String name) {
+        switch (name) {
+        case "goto":
+            return resolve(base, element.getAttribute("next"), Type.DOCUMENT);
+        case "submit":
+            if (element.hasAttribute("namelist")
+                    || "post".equalsIgnoreCase(element.getAttribute("method"))) {
+                return null;
+            }
+            return resolve(base, element.getAttribute("next"), Type.DOCUMENT);
+        case "subdialog":
+            if (element.hasAttribute("namelist")) {
+                return null;
+            }
+            return resolve(base, element.getAttribute("src"), Type.DOCUMENT);
+        case "grammar":
+            return resolve(base, element.getAttribute("src"), Type.GRAMMAR);
+        case "audio":
+            return resolve(base, element.getAttribute("src"), Type.AUDIO);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Resolves a target against the URI of its document.
+     * @param base URI of the document
+     * @param reference the value of the target attribute
+     * @param type kind of the target
+     * @return the target, <code>null</code> if there is none, it is invalid
+     *          or it is in the same document
+     */
+    private static Target resolve(final URI base, final String reference, final Type type) {
+        if (reference == null || reference.isEmpty() || reference.startsWith("#")) {
+            return null;
+        }
+        try {
+            final URI resolved = base == null ? new URI(reference) : base.resolve(reference);
+            if (!resolved.isAbsolute()) {
+                return null;
+            }
+            final URI uri = new URI(resolved.getScheme(), resolved.getSchemeSpecificPart(), null);
+            if (base != null && type == Type.DOCUMENT
+                    && uri.equals(new URI(base.getScheme(), base.getSchemeSpecificPart(), null))) {
+                return null;
+            }
+            return new Target(uri, type);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            LOGGER.debug("invalid target " + reference, e);
+            return null;
+        }
+    }
+
+    /**
+     * Determines the URI the targets of a document are resolved against,
+     * honoring <code>xml:base</code> of the root element.
+     * @param base URI of the document
+     * @param document the DOM of the document
+     * @return the base URI
+     */
+    private static URI baseOf(final URI base, final Document document) {
+        final Element root = document.getDocumentElement();
+        if (root == null) {
+            return base;
+        }
+        final String xmlBase = root.getAttributeNS("http://www.w3.org/XML/1998/namespace", "base");
+        if (xmlBase == null || xmlBase.isEmpty()) {
+            return base;
+        }
+        try {
+            return base == null ? new URI(xmlBase) : base.resolve(xmlBase);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return base;
+        }
+    }
+
+    /**
+     * Retrieves the number of targets waiting or being fetched.
+     * @return number of pending targets
+     */
+    public int getPending() {
+        return inFlight.size();
+    }
+
+    /**
+     * Retrieves the number of fetched targets.
+     * @return number of fetched targets
+     */
+    public long getFetched() {
+        return fetched.sum();
+    }
+
+    /**
+     * Retrieves the number of targets that could not be fetched.
+     * @return number of failed fetches
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Retrieves the number of targets skipped as the queue was full.
+     * @return number of skipped targets
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * Stops fetching. Targets waiting in the queue are dropped.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "DocumentPrefetcher[pending=" + getPending() + ", fetched=" + getFetched()
+                + ", failed=" + getFailed() + ", skipped=" + getSkipped() + "]";
+    }
+}
@@ -0,0 +1,169 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+/**
+ * DTMF keys to enter, see
+ * {@link EmbeddedServerTextCall#enter(DtmfSequence)}.
+ *
+ * A convenience to build an input of checked digits, an optional
+ * terminator and an optional delay between the keys. The keys are added
+ * to the DTMF input of the session one after the other, just like
+ * {@link EmbeddedServerTextCall#enter(String)} does. The recognizer of the
+ * session decides when the collection of digits ends. Keys are sent back
+ * to back unless a delay between them is set, e.g. to test timeouts.
+ */
+public final class DtmfSequence {
+    /** Valid DTMF keys. */
+    private static final String KEYS = "0123456789*#ABCDabcd";
+
+    /**
+     * The terminator of the sequences created by {@link #terminated(String)},
+     * the default <code>termchar</code>.
+     */
+    public static final char DEFAULT_TERMINATOR = '#';
+
+    /** The digits. */
+    private final String digits;
+    /** The terminator, 0 if none. */
+    private final char terminator;
+    /** Delay between two keys in msec. */
+    private final long interDigitDelay;
+
+    /**
+     * Constructs a new object.
+     * @param digits the digits
+     * @param terminator the terminator, 0 if none
+     * @param interDigitDelay delay between two keys in msec
+     */
+    private DtmfSequence(final String digits, final char terminator,
+                         final long interDigitDelay) {
+        this.digits = digits;
+        this.terminator = terminator;
+        this.interDigitDelay = interDigitDelay;
+    }
+
+    /**
+     * Creates a sequence of the given digits without terminator.
+     * @param digits the digits
+     * @return the sequence
+     * @throws IllegalArgumentException
+     *          the digits contain keys that are not DTMF keys
+     */
+    public static DtmfSequence of(final String digits) {
+        for (int i = 0; i < digits.length(); i++) {
+            check(digits.charAt(i));
+        }
+        return unchecked(digits);
+    }
+
+    /**
+     * Creates a sequence of the given digits without checking that they
+     * are DTMF keys, so that {@link EmbeddedServerTextCall#enter(String)}
+     * passes any digits on to the session as it always did.
+     * @param digits the digits
+     * @return the sequence
+     */
+    static DtmfSequence unchecked(final String digits) {
+        return new DtmfSequence(digits, (char) 0, 0);
+    }
+
+    /**
+     * Creates a sequence of the given digits followed by
+     * {@value #DEFAULT_TERMINATOR}.
+     * @param digits the digits
+     * @return the sequence
+     * @throws IllegalArgumentException
+     *          the digits contain keys that are not DTMF keys
+     */
+    public static DtmfSequence terminated(final String digits) {
+        return of(digits).withTerminator(DEFAULT_TERMINATOR);
+    }
+
+    /**
+     * Creates a copy of this sequence that ends with the given terminator.
+     * @param key the terminator
+     * @return the new sequence
+     * @throws IllegalArgumentException
+     *          the terminator is not a DTMF key
+     */
+    public DtmfSequence withTerminator(final char key) {
+        check(key);
+        return new DtmfSequence(digits, key, interDigitDelay);
+    }
+
+    /**
+     * Creates a copy of this sequence with the given delay between two
+     * keys.
+     * @param delay the delay in msec, 0 to send the keys back to back
+     * @return the new sequence
+     */
+    public DtmfSequence withInterDigitDelay(final long delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("delay must not be negative: " + delay);
+        }
+        return new DtmfSequence(digits, terminator, delay);
+    }
+
+    /**
+     * Checks that the given key is a DTMF key.
+     * @param key the key
+     * @throws IllegalArgumentException
+     *          the key is not a DTMF key
+     */
+    private static void check(final char key) {
+        if (KEYS.indexOf(key) < 0) {
+            throw new IllegalArgumentException("not a DTMF key: '" + key + "'");
+        }
+    }
+
+    /**
+     * Retrieves the digits without the terminator.
+     * @return the digits
+     */
+    public String getDigits() {
+        return digits;
+    }
+
+    /**
+     * Checks if the sequence ends with a terminator.
+     * @return <code>true</code> if there is a terminator
+     */
+    public boolean hasTerminator() {
+        return terminator != 0;
+    }
+
+    /**
+     * Retrieves the terminator.
+     * @return the terminator, 0 if there is none
+     */
+    public char getTerminator() {
+        return terminator;
+    }
+
+    /**
+     * Retrieves the delay between two keys.
+     * @return the delay in msec
+     */
+    public long getInterDigitDelay() {
+        return interDigitDelay;
+    }
+
+    /**
+     * Retrieves all keys to send, i.e. the digits followed by the
+     * terminator.
+     * @return the keys
+     */
+    public String getKeys() {
+        if (terminator == 0) {
+            return digits;
+        }
+        return digits + terminator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return getKeys();
+    }
+}
@@ -0,0 +1,327 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+
+import org.apache.log4j.Logger;
+import org.jvoicexml.JVoiceXmlMain;
+import org.jvoicexml.JVoiceXmlMainListener;
+import org.jvoicexml.Session;
+import org.jvoicexml.client.text.TextServer;
+import org.jvoicexml.event.ErrorEvent;
+
+/**
+ * An embedded JVoiceXML together with the text platforms and text servers
+ * its calls run on. One instance can serve many concurrent calls, each
+ * with its own session and text server.
+ */
+public class EmbeddedJVoiceXml {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(EmbeddedJVoiceXml.class);
+
+    /** System property for the number of concurrent calls of the shared instance. */
+    public static final String SESSIONS_PROPERTY = "embeddedjvxml.sessions";
+
+    /** System property for the number of sessions the shared instance keeps ready. */
+    public static final String SESSION_POOL_PROPERTY = "embeddedjvxml.sessionPool";
+
+    /** The instance shared within this JVM. */
+    private static EmbeddedJVoiceXml shared;
+    /** Number of created instances, to name their MBeans. */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /** The configuration of the interpreter. */
+    private final EmbeddedTextConfiguration configuration;
+    /** Text servers for new calls. */
+    private final TextServerPool textServerPool;
+    /** Figures of all calls. */
+    private final CallMetrics callMetrics;
+    /** Name of the MBeans of this instance. */
+    private final String name;
+    /** Number of sessions to keep ready, 0 to create them on demand. */
+    private int sessionPoolSize;
+    /** Calls with sessions created ahead of time, <code>null</code> if not used. */
+    private volatile SessionPool sessionPool;
+    /** The interpreter. */
+    private JVoiceXmlMain jvxml;
+
+    /**
+     * Constructs a new object for the given number of concurrent calls.
+     * @param sessions max. number of concurrent calls
+     */
+    public EmbeddedJVoiceXml(final int sessions) {
+        this(new EmbeddedTextConfiguration(new TextPlatformPool(sessions)),
+                new TextServerPool(sessions));
+    }
+
+    /**
+     * Constructs a new object.
+     * @param configuration the configuration of the interpreter
+     * @param textServerPool text servers for new calls
+     */
+    public EmbeddedJVoiceXml(final EmbeddedTextConfiguration configuration,
+                             final TextServerPool textServerPool) {
+        this.configuration = configuration;
+        this.textServerPool = textServerPool;
+        callMetrics = new CallMetrics();
+        name = "embedded-" + INSTANCES.incrementAndGet();
+    }
+
+    /**
+     * Sets the number of sessions that are created ahead of time, so that
+     * new calls do not wait for their session to be created. Must be set
+     * before {@link #start()}.
+     *
+     * Every ready session holds a text platform, so the
+     * {@link TextPlatformPool} must be sized for the concurrent calls plus
+     * the ready sessions.
+     * @param size number of sessions to keep ready, 0 to create sessions
+     *          on demand
+     * @throws IllegalArgumentException
+     *          if the ready sessions would take all text platforms
+     */
+    public synchronized void setSessionPoolSize(final int size) {
+        if (jvxml != null) {
+            throw new IllegalStateException("already started");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("pool size must not be negative: " + size);
+        }
+        final int platforms = configuration.getPlatformPool().getSize();
+        if (size >= platforms) {
+            throw new IllegalArgumentException("a pool of " + size
+                    + " sessions leaves none of the " + platforms + " text platforms for calls");
+        }
+        sessionPoolSize = size;
+    }
+
+    /**
+     * Retrieves the pool of sessions created ahead of time.
+     * @return the session pool, <code>null</code> if sessions are created
+     *          on demand or not started
+     */
+    public SessionPool getSessionPool() {
+        return sessionPool;
+    }
+
+    /**
+     * Retrieves the instance shared within this JVM, starting it on first
+     * use. The number of concurrent calls defaults to the number of
+     * processors and can be set with the system property
+     * {@value #SESSIONS_PROPERTY}, the number of sessions created ahead of
+     * time with {@value #SESSION_POOL_PROPERTY}. There is a text platform
+     * for each concurrent call and each ready session. The instance is
+     * stopped when the JVM exits.
+     * @return the started shared instance
+     * @throws IOException
+     *          error starting the text servers
+     * @throws InterruptedException
+     *          interrupted while waiting for JVoiceXML to start
+     */
+    public static synchronized EmbeddedJVoiceXml getShared()
+            throws IOException, InterruptedException {
+        if (shared == null) {
+            final int sessions = Integer.getInteger(SESSIONS_PROPERTY,
+                    Runtime.getRuntime().availableProcessors());
+            final int poolSize = Integer.getInteger(SESSION_POOL_PROPERTY, 0);
+            final EmbeddedJVoiceXml instance = new EmbeddedJVoiceXml(sessions + poolSize);
+            instance.setSessionPoolSize(poolSize);
+            instance.start();
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(instance::shutdown, "EmbeddedJVoiceXml shutdown"));
+            shared = instance;
+        }
+        return shared;
+    }
+
+    /**
+     * Stops the instance shared within this JVM if it was started. The next
+     * call of {@link #getShared()} starts a new instance.
+     */
+    public static synchronized void shutdownShared() {
+        if (shared != null) {
+            shared.shutdown();
+            shared = null;
+        }
+    }
+
+    /**
+     * Starts JVoiceXML and the text servers and waits until both are ready.
+     * The call metrics are registered with the platform MBean server.
+     * @throws IOException
+     *          error starting the text servers
+     * @throws InterruptedException
+     *          interrupted while waiting for JVoiceXML to start
+     */
+    public synchronized void start() throws IOException, InterruptedException {
+        final CountDownLatch startupLatch = new CountDownLatch(1);
+        final Throwable[] startupError = new Throwable[1];
+        jvxml = new JVoiceXmlMain(configuration);
+        jvxml.addListener(new JVoiceXmlMainListener() {
+            @Override
+            public void jvxmlStarted() {
+                startupLatch.countDown();
+            }
+
+            @Override
+            public void jvxmlTerminated() {
+            }
+
+            @Override
+            public void jvxmlStartupError(final Throwable exception) {
+                LOGGER.error("error starting JVoiceML", exception);
+                startupError[0] = exception;
+                startupLatch.countDown(); // cancel
+            }
+        });
+        jvxml.start();
+        startupLatch.await();
+        if (startupError[0] != null) {
+            throw new IllegalStateException("error starting JVoiceXML", startupError[0]);
+        }
+        textServerPool.start();
+        try {
+            callMetrics.register(name);
+        } catch (JMException e) {
+            LOGGER.warn("unable to register the call metrics", e);
+        }
+        if (sessionPoolSize > 0) {
+            sessionPool = new SessionPool(this, sessionPoolSize);
+            sessionPool.start();
+        }
+    }
+
+    /**
+     * Creates a new call with its own session and text server. The session is taken from the session pool if one is
+     * used.
+     * @return the new call
+     * @throws ErrorEvent
+     *          error creating the session
+     * @throws InterruptedException
+     *          interrupted while waiting for a text platform or text server
+     */
+    public EmbeddedServerTextCall newCall() throws ErrorEvent, InterruptedException {
+        final SessionPool pool = sessionPool;
+        if (pool != null) {
+            return pool.acquire();
+        }
+        return createCall();
+    }
+
+    /**
+     * Creates a new call with a new session.
+     * @return the new call
+     * @throws ErrorEvent
+     *          error creating the session
+     * @throws InterruptedException
+     *          interrupted while waiting for a text platform or text server
+     */
+    EmbeddedServerTextCall createCall() throws ErrorEvent, InterruptedException {
+        final TextServer textServer = textServerPool.acquire();
+        final Session session;
+        try {
+            session = configuration.getPlatformPool().createSession(jvxml, textServer);
+        } catch (ErrorEvent | InterruptedException | RuntimeException e) {
+            textServerPool.release(textServer);
+            throw e;
+        }
+        final EmbeddedServerTextCall call =
+                new EmbeddedServerTextCall(session, textServer, textServerPool);
+        call.setMetrics(callMetrics);
+        return call;
+    }
+
+    /**
+     * Hangs up the given call and waits until its text platform is available
+     * for the next call. The platform is returned by the
+     * {@link TextPlatformPool} once the session ended.
+     * @param call the call to end
+     */
+    public void endCall(final EmbeddedServerTextCall call) {
+        final Session session = call.getSession();
+        call.hangup();
+        if (session == null) {
+            return;
+        }
+        final TextPlatformPool platformPool = configuration.getPlatformPool();
+        if (!call.isCalled()) {
+            // A session that never ran does not end and keeps its platform
+            LOGGER.warn("session " + session.getSessionID() + " ended without a call");
+            platformPool.release(session);
+            return;
+        }
+        try {
+            platformPool.releaseAfterEnd(session).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.warn("error returning the platform of session " + session.getSessionID(),
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Stops the text servers and JVoiceXML, the prefetcher and the http
+     * connections of the configuration, which cannot be started again
+     * afterwards.
+     */
+    public synchronized void shutdown() {
+        if (jvxml == null) {
+            return;
+        }
+        if (sessionPool != null) {
+            sessionPool.shutdown();
+            sessionPool = null;
+        }
+        callMetrics.unregister();
+        textServerPool.shutdown();
+        jvxml.getDocumentServer().stop();
+        final DocumentPrefetcher prefetcher = configuration.getPrefetcher();
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
+        final PooledHttpSchemeStrategy httpSchemeStrategy =
+                configuration.getHttpSchemeStrategy();
+        if (httpSchemeStrategy != null) {
+            httpSchemeStrategy.shutdown();
+        }
+        jvxml.shutdown();
+        jvxml = null;
+    }
+
+    /**
+     * Retrieves the interpreter.
+     * @return the interpreter, <code>null</code> if not started
+     */
+    public JVoiceXmlMain getJVoiceXml() {
+        return jvxml;
+    }
+
+    /**
+     * Retrieves the configuration of the interpreter.
+     * @return the configuration
+     */
+    public EmbeddedTextConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Retrieves the figures of all calls of this instance.
+     * @return the call metrics
+     */
+    public CallMetrics getCallMetrics() {
+        return callMetrics;
+    }
+
+    /**
+     * Retrieves the text servers for new calls.
+     * @return the text server pool
+     */
+    public TextServerPool getTextServerPool() {
+        return textServerPool;
+    }
+}
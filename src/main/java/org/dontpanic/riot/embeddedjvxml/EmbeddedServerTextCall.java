@@ -3,7 +3,12 @@ package org.dontpanic.riot.embeddedjvxml;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.log4j.Logger;
@@ -17,27 +22,34 @@ import org.jvoicexml.event.ErrorEvent;
 import org.jvoicexml.event.JVoiceXMLEvent;
 import org.jvoicexml.voicexmlunit.Call;
 import org.jvoicexml.voicexmlunit.CallListener;
-import org.jvoicexml.voicexmlunit.InputMonitor;
-import org.jvoicexml.xml.ssml.Speak;
 import org.jvoicexml.xml.ssml.SsmlDocument;
 
 public class EmbeddedServerTextCall implements Call {
     /** Logger for this class. */
     private static final Logger LOGGER = Logger.getLogger(EmbeddedServerTextCall.class);
+    /** Threads entering DTMF sequences with delays between their keys. */
+    private static final ExecutorService DTMF_SENDER =
+            Executors.newCachedThreadPool(Threads.newThreadFactory("DtmfSender"));
     /** Known call listeners. */
-    private final Collection<CallListener> listeners;
-    /** The text server. */
-    private TextServer textServer;
-    /** Used port number. */
-    private int portNumber;
+    private final CallListenerDispatcher listeners;
+    /** The transport to the session. */
+    private final TextTransport transport;
     /** Buffered messages from JVoiceXml. */
     private OutputMessageBuffer outputBuffer;
-    /** Monitor to wait until JVoiceXML is ready to accept input. */
-    private InputMonitor inputMonitor;
+    /**
+     * Monitor to get notified when JVoiceXML is ready to accept input. The
+     * blocking and the asynchronous methods share it, so that each request
+     * for input is answered by exactly one of them.
+     */
+    private AsyncInputMonitor asyncInputMonitor;
     /** The last captured output. */
-    private SsmlDocument lastOutput;
+    private volatile Prompt lastOutput;
     /** The last observed error. */
     private JVoiceXMLEvent lastError;
+    /** <code>true</code> once a dialog was started. */
+    private volatile boolean called;
+    /** Metrics of all calls, <code>null</code> if not recorded. */
+    private volatile CallMetrics metrics;
 
     private JVoiceXml jvxml;
 
@@ -50,24 +62,120 @@ public class EmbeddedServerTextCall implements Call {
      * @throws InterruptedException error initializing the output buffer
      */
     public EmbeddedServerTextCall(Session session, TextServer textServer) throws InterruptedException {
+        this(session, new SocketTextTransport(textServer, null));
+    }
+
+    /**
+     * Constructs a new call on a text server taken from the given pool.
+     * The text server is returned to the pool on {@link #hangup()}.
+     * @param session the session
+     * @param textServer the text server the session is connected to
+     * @param textServerPool the pool the text server was taken from
+     * @throws InterruptedException error initializing the output buffer
+     */
+    public EmbeddedServerTextCall(Session session, TextServer textServer,
+                                  TextServerPool textServerPool) throws InterruptedException {
+        this(session, new SocketTextTransport(textServer, textServerPool));
+    }
+
+    /**
+     * Constructs a new call on the given transport. The transport is closed
+     * on {@link #hangup()}.
+     * @param session the session
+     * @param transport the transport the session is connected to
+     * @throws InterruptedException error initializing the output buffer
+     */
+    public EmbeddedServerTextCall(Session session, TextTransport transport)
+            throws InterruptedException {
         this.session = session;
-        this.textServer = textServer;
+        this.transport = transport;
 
         outputBuffer = new OutputMessageBuffer();
-        this.textServer.addTextListener(outputBuffer);
-        inputMonitor = new InputMonitor();
-        this.textServer.addTextListener(inputMonitor);
-        listeners = new java.util.ArrayList<CallListener>();
+        this.transport.addTextListener(outputBuffer);
+        asyncInputMonitor = new AsyncInputMonitor();
+        this.transport.addTextListener(asyncInputMonitor);
+        listeners = new CallListenerDispatcher();
     }
 
 
+    /**
+     * Retrieves the session of this call.
+     * @return the session, <code>null</code> after hangup
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Checks if a dialog was started on this call.
+     * @return <code>true</code> if {@link #call(URI)} succeeded
+     */
+    public boolean isCalled() {
+        return called;
+    }
+
+    /**
+     * Retrieves the buffer of outputs not yet read, e.g. to let the
+     * interpreter run ahead of the client by increasing its capacity.
+     * @return the output buffer
+     */
+    public OutputMessageBuffer getOutputBuffer() {
+        return outputBuffer;
+    }
+
+    /**
+     * Retrieves the transport to the session of this call.
+     * @return the transport
+     */
+    public TextTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Adds the given listener of the events of this call. Listeners may be
+     * added at any time.
+     * @param listener the listener to add
+     */
+    public void addListener(final CallListener listener) {
+        listeners.addListener(listener);
+    }
+
+    /**
+     * Removes the given listener of the events of this call.
+     * @param listener the listener to remove
+     */
+    public void removeListener(final CallListener listener) {
+        listeners.removeListener(listener);
+    }
+
+    /**
+     * Retrieves the dispatcher of the events of this call to its listeners,
+     * e.g. to deliver events asynchronously.
+     * @return the listener dispatcher
+     */
+    public CallListenerDispatcher getListenerDispatcher() {
+        return listeners;
+    }
+
+    /**
+     * Records the figures of this call into the given metrics. Must be set
+     * before the call is started.
+     * @param callMetrics the metrics to record to
+     */
+    public void setMetrics(final CallMetrics callMetrics) {
+        metrics = callMetrics;
+        listeners.setMetrics(callMetrics);
+        outputBuffer.setMetrics(callMetrics);
+        listeners.addSynchronousListener(new CallMetricsListener(callMetrics));
+    }
+
     /**
      * Adds the given listener of messages received from the JVoiceXML.
      * This allows for further investigation of the behavior.
      * @param listener the listener to add
      */
     public void addTextListener(final TextListener listener) {
-        textServer.addTextListener(listener);
+        transport.addTextListener(listener);
     }
 
     /**
@@ -81,9 +189,8 @@ public class EmbeddedServerTextCall implements Call {
 
             // run the dialog
             session.call(uri);
-            for (CallListener listener : listeners) {
-                listener.called(uri);
-            }
+            called = true;
+            listeners.called(uri);
         } catch (Exception | ErrorEvent e) {
             final AssertionError error = new AssertionError(e);
             notifyError(error);
@@ -96,63 +203,105 @@ public class EmbeddedServerTextCall implements Call {
      */
     @Override
     public SsmlDocument getNextOutput() {
+        return nextPrompt().getDocument();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SsmlDocument getNextOutput(final long timeout) {
+        return nextPrompt(timeout).getDocument();
+    }
+
+    /**
+     * Retrieves the next output as a prompt. Unlike
+     * {@link #getNextOutput()}, no DOM is needed to read its text or audio
+     * sources.
+     * @return the next output
+     */
+    public Prompt nextPrompt() {
         Assert.assertNotNull("no active session", session);
         try {
-            lastOutput = outputBuffer.nextMessage();
-            for (CallListener listener : listeners) {
-                listener.heard(lastOutput);
-            }
-            LOGGER.info("heard '" + lastOutput + "'");
-            return lastOutput;
+            return heard(outputBuffer.nextPrompt());
         } catch (InterruptedException | JVoiceXMLEvent e) {
-            try {
-                lastError = session.getLastError();
-            } catch (ErrorEvent ex) {
-                final AssertionError error = new AssertionError(ex);
-                notifyError(error);
-                throw error;
-            }
-            if (lastError != null) {
-                final AssertionError error = new AssertionError(lastError);
-                notifyError(error);
-                throw error;
-            }
-            final AssertionError error = new AssertionError(e);
-            notifyError(error);
-            throw error;
+            throw outputFailed(e);
         }
     }
 
     /**
-     * {@inheritDoc}
+     * Retrieves the next output as a prompt. Unlike
+     * {@link #getNextOutput(long)}, no DOM is needed to read its text or
+     * audio sources.
+     * @param timeout max. time to wait in msec
+     * @return the next output
      */
-    @Override
-    public SsmlDocument getNextOutput(final long timeout) {
+    public Prompt nextPrompt(final long timeout) {
         Assert.assertNotNull("no active session", session);
         try {
-            lastOutput = outputBuffer.nextMessage(timeout);
-            for (CallListener listener : listeners) {
-                listener.heard(lastOutput);
-            }
-            LOGGER.info("heard '" + lastOutput + "'");
-            return lastOutput;
+            return heard(outputBuffer.nextPrompt(timeout));
         } catch (InterruptedException | TimeoutException | JVoiceXMLEvent e) {
-            try {
-                lastError = session.getLastError();
-            } catch (ErrorEvent ex) {
-                final AssertionError error = new AssertionError(ex);
-                notifyError(error);
-                throw error;
-            }
-            if (lastError != null) {
-                final AssertionError error = new AssertionError(lastError);
-                notifyError(error);
-                throw error;
-            }
-            final AssertionError error = new AssertionError(e);
+            throw outputFailed(e);
+        }
+    }
+
+    /**
+     * Retrieves the next output and selects a fact from it, e.g.
+     * <code>call.query(OutputSelector.AUDIO_SOURCES)</code>.
+     * @param selector the selector
+     * @param <T> type of the selected fact
+     * @return the selected fact
+     */
+    public <T> T query(final OutputSelector<T> selector) {
+        return selector.select(nextPrompt());
+    }
+
+    /**
+     * Retrieves the next output and selects a fact from it.
+     * @param selector the selector
+     * @param timeout max. time to wait in msec
+     * @param <T> type of the selected fact
+     * @return the selected fact
+     */
+    public <T> T query(final OutputSelector<T> selector, final long timeout) {
+        return selector.select(nextPrompt(timeout));
+    }
+
+    /**
+     * Records the given output as the last output and notifies the
+     * listeners.
+     * @param prompt the output
+     * @return the output
+     */
+    private Prompt heard(final Prompt prompt) {
+        lastOutput = prompt;
+        listeners.heard(prompt);
+        LOGGER.info("heard '" + prompt + "'");
+        return prompt;
+    }
+
+    /**
+     * Converts a failure to retrieve the next output into an
+     * {@link AssertionError} and notifies the listeners.
+     * @param e the failure
+     * @return the error to throw
+     */
+    private AssertionError outputFailed(final Throwable e) {
+        try {
+            lastError = session.getLastError();
+        } catch (ErrorEvent ex) {
+            final AssertionError error = new AssertionError(ex);
             notifyError(error);
-            throw error;
+            return error;
         }
+        if (lastError != null) {
+            final AssertionError error = new AssertionError(lastError);
+            notifyError(error);
+            return error;
+        }
+        final AssertionError error = new AssertionError(e);
+        notifyError(error);
+        return error;
     }
 
     /**
@@ -160,6 +309,18 @@ public class EmbeddedServerTextCall implements Call {
      */
     @Override
     public SsmlDocument getLastOutput() {
+        final Prompt prompt = lastOutput;
+        if (prompt == null) {
+            return null;
+        }
+        return prompt.getDocument();
+    }
+
+    /**
+     * Retrieves the last captured output as a prompt.
+     * @return the last output, <code>null</code> if there was none
+     */
+    public Prompt getLastPrompt() {
         return lastOutput;
     }
 
@@ -169,10 +330,8 @@ public class EmbeddedServerTextCall implements Call {
     @Override
     public void hears(final String utterance) {
         Assert.assertNotNull("no active session", session);
-        final SsmlDocument document = getNextOutput();
-        final Speak speak = document.getSpeak();
-        final String output = speak.getTextContent();
-        Assert.assertEquals(utterance, output);
+        final Prompt prompt = nextPrompt();
+        Assert.assertEquals(utterance, prompt.getText());
     }
 
     /**
@@ -181,10 +340,8 @@ public class EmbeddedServerTextCall implements Call {
     @Override
     public void hears(final String utterance, final long timeout) {
         Assert.assertNotNull("no active session", session);
-        final SsmlDocument document = getNextOutput(timeout);
-        final Speak speak = document.getSpeak();
-        final String output = speak.getTextContent();
-        Assert.assertEquals(utterance, output);
+        final Prompt prompt = nextPrompt(timeout);
+        Assert.assertEquals(utterance, prompt.getText());
     }
 
     /**
@@ -202,15 +359,10 @@ public class EmbeddedServerTextCall implements Call {
     public void say(final String utterance, final long timeout) {
         Assert.assertNotNull("no active session", session);
         try {
-            if (timeout == 0) {
-                inputMonitor.waitUntilExpectingInput();
-            } else {
-                inputMonitor.waitUntilExpectingInput(timeout);
-            }
-            textServer.sendInput(utterance);
-            for (CallListener listener : listeners) {
-                listener.said(utterance);
-            }
+            waitUntilExpectingInput(timeout);
+            outputBuffer.inputSent();
+            transport.sendInput(utterance);
+            listeners.said(utterance);
             LOGGER.info("say '" + utterance + "'");
         } catch (InterruptedException | IOException | TimeoutException
                 | JVoiceXMLEvent e) {
@@ -237,30 +389,7 @@ public class EmbeddedServerTextCall implements Call {
      */
     @Override
     public void enter(final String digits) {
-        Assert.assertNotNull("no active session", session);
-        DtmfInput input = null;
-        try {
-            inputMonitor.waitUntilExpectingInput();
-            input = session.getDtmfInput();
-        } catch (JVoiceXMLEvent | InterruptedException e) {
-            throw new AssertionError(e);
-        }
-        for (int i = 0; i < digits.length(); i++) {
-            final char ch = digits.charAt(i);
-            input.addDtmf(ch);
-        }
-        for (CallListener listener : listeners) {
-            listener.entered(digits);
-        }
-
-        // Ignore spurious output update - take it from the buffer and discard
-        try {
-            outputBuffer.nextMessage(1000);
-        } catch (InterruptedException | JVoiceXMLEvent | TimeoutException e) {
-            LOGGER.warn("Interrupted while waiting for next message", e);
-        }
-
-        LOGGER.info("entered '" + digits + "'");
+        enter(DtmfSequence.unchecked(digits), 0);
     }
 
     /**
@@ -268,26 +397,64 @@ public class EmbeddedServerTextCall implements Call {
      */
     @Override
     public void enter(final String digits, final long timeout) {
+        enter(DtmfSequence.unchecked(digits), timeout);
+    }
+
+    /**
+     * Enters all keys of the given sequence once JVoiceXML expects input.
+     * @param sequence the keys to enter
+     */
+    public void enter(final DtmfSequence sequence) {
+        enter(sequence, 0);
+    }
+
+    /**
+     * Enters all keys of the given sequence once JVoiceXML expects input.
+     * @param sequence the keys to enter
+     * @param timeout max. time to wait for JVoiceXML to expect input in
+     *          msec, 0 to wait forever
+     */
+    public void enter(final DtmfSequence sequence, final long timeout) {
         Assert.assertNotNull("no active session", session);
         DtmfInput input = null;
         try {
-            if (timeout == 0) {
-                inputMonitor.waitUntilExpectingInput();
-            } else {
-                inputMonitor.waitUntilExpectingInput(timeout);
-            }
+            waitUntilExpectingInput(timeout);
             input = session.getDtmfInput();
         } catch (JVoiceXMLEvent | InterruptedException | TimeoutException e) {
             throw new AssertionError(e);
         }
-        for (int i = 0; i < digits.length(); i++) {
-            final char ch = digits.charAt(i);
-            input.addDtmf(ch);
+
+        // The platform answers with a spurious output update that is
+        // discarded by the buffer when it arrives
+        outputBuffer.dtmfSent();
+        try {
+            sendDtmf(input, sequence);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
         }
-        for (CallListener listener : listeners) {
-            listener.entered(digits);
+        listeners.entered(sequence.getKeys());
+        LOGGER.info("entered '" + sequence + "'");
+    }
+
+    /**
+     * Adds the keys of the given sequence to the DTMF input, waiting the
+     * delay of the sequence between two keys.
+     * @param input the DTMF input of the session
+     * @param sequence the keys to add
+     * @throws InterruptedException
+     *          interrupted while waiting between two keys
+     */
+    private void sendDtmf(final DtmfInput input, final DtmfSequence sequence)
+            throws InterruptedException {
+        final String keys = sequence.getKeys();
+        final long delay = sequence.getInterDigitDelay();
+        for (int i = 0; i < keys.length(); i++) {
+            if (i > 0 && delay > 0) {
+                Thread.sleep(delay);
+            }
+            input.addDtmf(keys.charAt(i));
         }
-        LOGGER.info("entered '" + digits + "'");
     }
 
     /**
@@ -297,8 +464,8 @@ public class EmbeddedServerTextCall implements Call {
     public void waitUnitExpectingInput() {
         Assert.assertNotNull("no active session", session);
         try {
-            inputMonitor.waitUntilExpectingInput();
-        } catch (InterruptedException | JVoiceXMLEvent e) {
+            waitUntilExpectingInput(0);
+        } catch (InterruptedException | TimeoutException | JVoiceXMLEvent e) {
             JVoiceXMLEvent lastError;
             try {
                 lastError = session.getLastError();
@@ -325,11 +492,7 @@ public class EmbeddedServerTextCall implements Call {
     public void waitUnitExpectingInput(final long timeout) {
         Assert.assertNotNull("no active session", session);
         try {
-            if (timeout == 0) {
-                inputMonitor.waitUntilExpectingInput();
-            } else {
-                inputMonitor.waitUntilExpectingInput(timeout);
-            }
+            waitUntilExpectingInput(timeout);
         } catch (InterruptedException | TimeoutException
                 | JVoiceXMLEvent e) {
             JVoiceXMLEvent lastError;
@@ -351,6 +514,190 @@ public class EmbeddedServerTextCall implements Call {
         }
     }
 
+    /**
+     * Waits until JVoiceXML expects input and records the time waited.
+     * @param timeout max. time to wait in msec, 0 to wait forever
+     * @throws InterruptedException
+     *          interrupted while waiting
+     * @throws TimeoutException
+     *          JVoiceXML did not expect input in time
+     * @throws JVoiceXMLEvent
+     *          error while waiting, e.g. the session ended
+     */
+    private void waitUntilExpectingInput(final long timeout)
+            throws InterruptedException, TimeoutException, JVoiceXMLEvent {
+        final long start = System.nanoTime();
+        final CompletableFuture<Void> expecting = asyncInputMonitor.whenExpectingInput();
+        try {
+            if (timeout == 0) {
+                expecting.get();
+            } else {
+                expecting.get(timeout, TimeUnit.MILLISECONDS);
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof JVoiceXMLEvent) {
+                throw (JVoiceXMLEvent) cause;
+            }
+            throw new AssertionError(cause);
+        } finally {
+            // A request for input arriving later belongs to the next operation
+            expecting.cancel(false);
+            recordInputWait(start);
+        }
+    }
+
+    /**
+     * Records the time waited for JVoiceXML to expect input.
+     * @param start start of the wait in nsec
+     */
+    private void recordInputWait(final long start) {
+        final CallMetrics callMetrics = metrics;
+        if (callMetrics != null) {
+            callMetrics.recordInputWait(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Retrieves the next output without blocking the caller. The future is
+     * completed by the thread receiving the output from JVoiceXML.
+     * @return future of the next output, completed exceptionally with an
+     *          {@link AssertionError} on failure
+     */
+    public CompletableFuture<SsmlDocument> nextOutputAsync() {
+        return nextPromptAsync().thenApply(Prompt::getDocument);
+    }
+
+    /**
+     * Retrieves the next output as a prompt without blocking the caller.
+     * The future is completed by the thread receiving the output from
+     * JVoiceXML.
+     * @return future of the next output, completed exceptionally with an
+     *          {@link AssertionError} on failure
+     */
+    public CompletableFuture<Prompt> nextPromptAsync() {
+        Assert.assertNotNull("no active session", session);
+        return failAsAssertion(outputBuffer.nextPromptAsync().thenApply(this::heard));
+    }
+
+    /**
+     * Sends the utterance once JVoiceXML expects input without blocking the
+     * caller.
+     * @param utterance the utterance to send
+     * @return future that completes when the utterance was sent, completed
+     *          exceptionally with an {@link AssertionError} on failure
+     */
+    public CompletableFuture<Void> sayAsync(final String utterance) {
+        Assert.assertNotNull("no active session", session);
+        final long start = System.nanoTime();
+        final CompletableFuture<Void> said =
+                asyncInputMonitor.whenExpectingInput().thenRun(() -> {
+                    recordInputWait(start);
+                    try {
+                        outputBuffer.inputSent();
+                        transport.sendInput(utterance);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                    listeners.said(utterance);
+                    LOGGER.info("say '" + utterance + "'");
+                });
+        return failAsAssertion(said);
+    }
+
+    /**
+     * Enters the digits once JVoiceXML expects input without blocking the
+     * caller.
+     * @param digits the DTMF digits to enter
+     * @return future that completes when the digits were entered, completed
+     *          exceptionally with an {@link AssertionError} on failure
+     */
+    public CompletableFuture<Void> enterAsync(final String digits) {
+        return enterAsync(DtmfSequence.unchecked(digits));
+    }
+
+    /**
+     * Enters the keys of the given sequence once JVoiceXML expects input
+     * without blocking the caller. Sequences with a delay between their
+     * keys are sent from a separate thread.
+     * @param sequence the keys to enter
+     * @return future that completes when the keys were entered, completed
+     *          exceptionally with an {@link AssertionError} on failure
+     */
+    public CompletableFuture<Void> enterAsync(final DtmfSequence sequence) {
+        // The call may be hung up before the input is sent
+        final Session activeSession = session;
+        Assert.assertNotNull("no active session", activeSession);
+        final long start = System.nanoTime();
+        final Runnable enter = () -> {
+            recordInputWait(start);
+            final DtmfInput input;
+            try {
+                input = activeSession.getDtmfInput();
+            } catch (JVoiceXMLEvent e) {
+                throw new CompletionException(e);
+            }
+            outputBuffer.dtmfSent();
+            try {
+                sendDtmf(input, sequence);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            listeners.entered(sequence.getKeys());
+            LOGGER.info("entered '" + sequence + "'");
+        };
+        final CompletableFuture<Void> expecting = asyncInputMonitor.whenExpectingInput();
+        final CompletableFuture<Void> entered;
+        if (sequence.getInterDigitDelay() == 0) {
+            entered = expecting.thenRun(enter);
+        } else {
+            entered = expecting.thenRunAsync(enter, DTMF_SENDER);
+        }
+        return failAsAssertion(entered);
+    }
+
+    /**
+     * Converts failures of the given future into {@link AssertionError}s as
+     * thrown by the blocking methods and notifies the listeners.
+     * @param future the future to watch
+     * @param <T> type of the result
+     * @return future completed like the given future
+     */
+    private <T> CompletableFuture<T> failAsAssertion(final CompletableFuture<T> future) {
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        future.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = throwable;
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof AssertionError) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            JVoiceXMLEvent error = null;
+            if (session != null) {
+                try {
+                    error = session.getLastError();
+                } catch (ErrorEvent e) {
+                    error = e;
+                }
+            }
+            if (error != null) {
+                lastError = error;
+            }
+            final AssertionError assertion =
+                    new AssertionError(error == null ? cause : error);
+            notifyError(assertion);
+            result.completeExceptionally(assertion);
+        });
+        return result;
+    }
+
     /**
      * Notifies all listeners about the given error.
      *
@@ -358,9 +705,7 @@ public class EmbeddedServerTextCall implements Call {
      *            the caught error
      */
     private void notifyError(final AssertionError error) {
-        for (CallListener listener : listeners) {
-            listener.error(error);
-        }
+        listeners.error(error);
     }
 
     /**
@@ -370,15 +715,13 @@ public class EmbeddedServerTextCall implements Call {
     public void hangup() {
         if (session != null) {
             session.hangup();
-            for (CallListener listener : listeners) {
-                listener.hungup();
-            }
+            listeners.hungup();
             LOGGER.info("hungup");
             session = null;
         }
 
-        textServer.stopServer();
-        LOGGER.info("textServer stopped");
+        transport.close();
+        LOGGER.info("transport closed");
     }
 
     /**
@@ -26,11 +26,8 @@ import org.jvoicexml.profile.TagStrategyFactory;
 import org.jvoicexml.xml.vxml.Vxml;
 import org.w3c.dom.Node;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Map;
 
 /**
  * Dummy {@link TagStrategyFactory} for test purposes.
@@ -44,89 +41,43 @@ public class EmbeddedTagStrategyFactory
      * Known strategies. The known strategies are templates for the strategy to
      * be executed by the <code>ForminterpreteationAlgorithm</code>.
      */
-    private final Map<String, TagStrategy> strategies;
+    private final TagStrategyRegistry strategies;
+
+    /** Profiler of the handed out strategies, <code>null</code> if disabled. */
+    private volatile ExecutionProfiler profiler;
+
+    /**
+     * Creates a new object with the strategies known to this JVM.
+     */
+    public EmbeddedTagStrategyFactory() {
+        this(TagStrategyRegistry.getInstance());
+    }
 
     /**
      * Creates a new object.
-     * @throws NoSuchMethodException 
-     * @throws SecurityException 
-     * @throws InvocationTargetException 
-     * @throws IllegalArgumentException 
+     * @param strategies the known strategies
      */
-    public EmbeddedTagStrategyFactory() 
-        throws InstantiationException, IllegalAccessException,
-        ClassNotFoundException, SecurityException, NoSuchMethodException, IllegalArgumentException, InvocationTargetException {
-        strategies = new java.util.HashMap<String, TagStrategy>();
-        strategies.put("assign",
-         loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.AssignStrategy"));
-        strategies.put("audio",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.AudioTagStrategy"));
-        strategies.put("clear",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.ClearStrategy"));
-        strategies.put("data",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.DataStrategy"));
-        strategies.put("disconnect",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.DisconnectStrategy"));
-        strategies.put("exit",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.ExitStrategy"));
-        strategies.put("goto",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.GotoStrategy"));
-        strategies.put("grammar",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.GrammarStrategy"));
-        strategies.put("if",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.IfStrategy"));
-        strategies.put("log",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.LogStrategy"));
-        strategies.put("prompt",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.PromptStrategy"));
-        strategies.put("reprompt",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.RepromptStrategy"));
-        strategies.put("return",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.ReturnStrategy"));
-        strategies.put("script",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.ScriptStrategy"));
-        strategies.put("submit",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.SubmitStrategy"));
-        strategies.put("#text",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.TextStrategy"));
-        strategies.put("throw",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.ThrowStrategy"));
-        strategies.put("submit",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.SubmitStrategy"));
-        strategies.put("value",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.ValueStrategy"));
-        strategies.put("valvarue",
-                loadStrategy("org.jvoicexml.profile.vxml21.tagstrategy.VarStrategy"));
+    public EmbeddedTagStrategyFactory(final TagStrategyRegistry strategies) {
+        this.strategies = strategies;
     }
 
     /**
-     * Loads the specified tag strategy.
-     * @param name name of the class to load
-     * @return loaded tag strategy
-     * @throws InstantiationException
-     *         unable to create the tag strategy
-     * @throws IllegalAccessException
-     *         unable to create the tag strategy
-     * @throws ClassNotFoundException
-     *         unable to create the tag strategy
-     * @throws NoSuchMethodException 
-     *         unable to create the tag strategy
-     * @throws SecurityException 
-     *         unable to create the tag strategy
-     * @throws InvocationTargetException 
-     *         unable to create the tag strategy
-     * @throws IllegalArgumentException 
-     *         unable to create the tag strategy
+     * Sets the profiler that records the execution of the handed out
+     * strategies.
+     * @param executionProfiler the profiler, <code>null</code> to disable
+     *          profiling
      */
-    private TagStrategy loadStrategy(final String name)
-        throws InstantiationException, IllegalAccessException,
-            ClassNotFoundException, SecurityException, NoSuchMethodException,
-            IllegalArgumentException, InvocationTargetException {
-        final Class<?> clazz = Class.forName(name);
-        @SuppressWarnings("rawtypes")
-        final Constructor constructor = clazz.getDeclaredConstructor();
-        constructor.setAccessible(true);
-        return (TagStrategy) constructor.newInstance();
+    public void setProfiler(final ExecutionProfiler executionProfiler) {
+        profiler = executionProfiler;
+    }
+
+    /**
+     * Retrieves the profiler that records the execution of the handed out
+     * strategies.
+     * @return the profiler, <code>null</code> if profiling is disabled
+     */
+    public ExecutionProfiler getProfiler() {
+        return profiler;
     }
 
     /**
@@ -150,12 +101,12 @@ public class EmbeddedTagStrategyFactory
         if (tag == null) {
             return null;
         }
-        final TagStrategy strategy = strategies.get(tag);
-        if (strategy == null) {
-            return null;
+        final TagStrategy strategy = strategies.getTagStrategy(tag);
+        final ExecutionProfiler executionProfiler = profiler;
+        if (executionProfiler == null) {
+            return strategy;
         }
-
-        return strategy.newInstance();
+        return executionProfiler.profile(tag, strategy);
     }
 
     /**
@@ -58,6 +58,202 @@ public class EmbeddedTextConfiguration implements Configuration {
 
     private static final Logger LOGGER = Logger.getLogger(EmbeddedTextConfiguration.class);
 
+    /** Default time the DTMF recognizer waits for the next digit. */
+    public static final String DEFAULT_INTER_DIGIT_TIMEOUT = "1s";
+
+    /** The pool of text platforms. */
+    private final TextPlatformPool platformPool;
+    /** The tag strategies, shared by the profile and all sessions. */
+    private final EmbeddedTagStrategyFactory tagStrategyFactory;
+    /** Cache of parsed VoiceXML documents, <code>null</code> if disabled. */
+    private DocumentCache documentCache;
+    /** Cache of grammars, <code>null</code> if disabled. */
+    private GrammarCache grammarCache;
+    /** Fetches the targets of loaded documents, <code>null</code> if disabled. */
+    private DocumentPrefetcher prefetcher;
+    /** Cache of compiled ECMAScript, <code>null</code> if disabled. */
+    private ScriptCache scriptCache;
+    /** <code>true</code> if the sessions share the sealed standard objects. */
+    private boolean sharedRootScope;
+    /** Time the DTMF recognizer waits for the next digit. */
+    private String interDigitTimeout;
+    /** Fetches <code>http:</code> documents for all sessions, <code>null</code> if not pooled. */
+    private PooledHttpSchemeStrategy httpSchemeStrategy;
+
+    /**
+     * Constructs a configuration with a single text platform.
+     */
+    public EmbeddedTextConfiguration() {
+        this(new TextPlatformPool());
+    }
+
+    /**
+     * Constructs a configuration with as many text platforms as the given
+     * pool holds.
+     * @param platformPool the pool of text platforms
+     */
+    public EmbeddedTextConfiguration(final TextPlatformPool platformPool) {
+        this.platformPool = platformPool;
+        tagStrategyFactory = new EmbeddedTagStrategyFactory();
+        interDigitTimeout = DEFAULT_INTER_DIGIT_TIMEOUT;
+    }
+
+    /**
+     * Retrieves the pool of text platforms sessions must be created with.
+     * @return the pool of text platforms
+     */
+    public TextPlatformPool getPlatformPool() {
+        return platformPool;
+    }
+
+    /**
+     * Sets the strategy fetching <code>http:</code> documents with
+     * connections and cached responses shared by all sessions.
+     * Must be set before JVoiceXML is started.
+     * @param strategy the http scheme strategy, <code>null</code> to use
+     *          the original strategy of JVoiceXML
+     */
+    public void setHttpSchemeStrategy(final PooledHttpSchemeStrategy strategy) {
+        httpSchemeStrategy = strategy;
+    }
+
+    /**
+     * Retrieves the strategy fetching <code>http:</code> documents with
+     * shared connections, e.g. to configure its connection limits.
+     * @return the http scheme strategy, <code>null</code> if the original
+     *          strategy of JVoiceXML is used
+     */
+    public PooledHttpSchemeStrategy getHttpSchemeStrategy() {
+        return httpSchemeStrategy;
+    }
+
+    /**
+     * Sets the profiler that records the execution of the VoiceXML elements
+     * of all sessions.
+     * @param profiler the profiler, <code>null</code> to disable profiling
+     */
+    public void setProfiler(final ExecutionProfiler profiler) {
+        tagStrategyFactory.setProfiler(profiler);
+    }
+
+    /**
+     * Retrieves the profiler that records the execution of the VoiceXML
+     * elements of all sessions.
+     * @return the profiler, <code>null</code> if profiling is disabled
+     */
+    public ExecutionProfiler getProfiler() {
+        return tagStrategyFactory.getProfiler();
+    }
+
+    /**
+     * Sets the cache of parsed VoiceXML documents shared by all sessions.
+     * Must be set before JVoiceXML is started.
+     * @param cache the document cache, <code>null</code> to disable caching
+     */
+    public void setDocumentCache(final DocumentCache cache) {
+        documentCache = cache;
+    }
+
+    /**
+     * Retrieves the cache of parsed VoiceXML documents.
+     * @return the document cache, <code>null</code> if caching is disabled
+     */
+    public DocumentCache getDocumentCache() {
+        return documentCache;
+    }
+
+    /**
+     * Sets the cache of grammars shared by all sessions.
+     * Must be set before JVoiceXML is started.
+     * @param cache the grammar cache, <code>null</code> to disable caching
+     */
+    public void setGrammarCache(final GrammarCache cache) {
+        grammarCache = cache;
+    }
+
+    /**
+     * Retrieves the cache of grammars.
+     * @return the grammar cache, <code>null</code> if caching is disabled
+     */
+    public GrammarCache getGrammarCache() {
+        return grammarCache;
+    }
+
+    /**
+     * Sets the prefetcher that fetches the static targets of each loaded
+     * document into the document and grammar caches in the background.
+     * Only used with a document cache. Must be set before JVoiceXML is
+     * started.
+     * @param documentPrefetcher the prefetcher, <code>null</code> to
+     *          disable prefetching
+     */
+    public void setPrefetcher(final DocumentPrefetcher documentPrefetcher) {
+        prefetcher = documentPrefetcher;
+    }
+
+    /**
+     * Retrieves the prefetcher of the targets of loaded documents.
+     * @return the prefetcher, <code>null</code> if prefetching is disabled
+     */
+    public DocumentPrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    /**
+     * Sets the cache of compiled ECMAScript shared by all sessions. The
+     * cache determines the Rhino optimization level of the scripts. With a
+     * cache the sessions use the {@link CachingEcmaScriptDataModel}.
+     * Must be set before JVoiceXML is started.
+     * @param cache the script cache, <code>null</code> to disable caching
+     */
+    public void setScriptCache(final ScriptCache cache) {
+        scriptCache = cache;
+    }
+
+    /**
+     * Retrieves the cache of compiled ECMAScript.
+     * @return the script cache, <code>null</code> if caching is disabled
+     */
+    public ScriptCache getScriptCache() {
+        return scriptCache;
+    }
+
+    /**
+     * Lets the data models of all sessions share one sealed scope with the
+     * ECMAScript standard objects instead of initializing their own. Off by
+     * default. The sessions then use the {@link CachingEcmaScriptDataModel}.
+     * Must be set before JVoiceXML is started.
+     * @param shared <code>true</code> to share the root scope
+     */
+    public void setSharedRootScope(final boolean shared) {
+        sharedRootScope = shared;
+    }
+
+    /**
+     * Checks if the data models of all sessions share one root scope.
+     * @return <code>true</code> if the root scope is shared
+     */
+    public boolean isSharedRootScope() {
+        return sharedRootScope;
+    }
+
+    /**
+     * Sets the time the DTMF recognizer waits for the next digit before
+     * it ends the collection, e.g. <code>500ms</code>.
+     * @param timeout the timeout as a VoiceXML time designation
+     */
+    public void setInterDigitTimeout(final String timeout) {
+        interDigitTimeout = timeout;
+    }
+
+    /**
+     * Retrieves the time the DTMF recognizer waits for the next digit.
+     * @return the timeout as a VoiceXML time designation
+     */
+    public String getInterDigitTimeout() {
+        return interDigitTimeout;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -67,30 +263,34 @@ public class EmbeddedTextConfiguration implements Configuration {
                                          final String root) {
         final Collection<T> col = new java.util.ArrayList<T>();
         if (baseClass == TagStrategyFactory.class) {
-            try {
-                T value = (T) new EmbeddedTagStrategyFactory();
-                col.add(value);
-            } catch (Exception e) {
-                return null;
-            }
+            col.add((T) tagStrategyFactory);
         } else if (baseClass == PlatformFactory.class) {
             final TextPlatformFactory factory = new TextPlatformFactory();
-            factory.setInstances(1);
+            factory.setInstances(platformPool.getSize());
             col.add((T) factory);
         } else if (baseClass == GrammarIdentifier.class) {
             final GrammarIdentifier identifier = new SrgsXmlGrammarIdentifier();
-            col.add((T) identifier);
+            if (grammarCache == null) {
+                col.add((T) identifier);
+            } else {
+                col.add((T) new CachingGrammarIdentifier(identifier, grammarCache));
+            }
         } else if (baseClass == Profile.class) {
             final VoiceXml21Profile profile = new VoiceXml21Profile();
-            try {
-                profile.setInitializationTagStrategyFactory(new EmbeddedTagStrategyFactory());
-                profile.setTagStrategyFactory(new EmbeddedTagStrategyFactory());
-            } catch (Exception e) {
-                LOGGER.error("Failed to initialize profile tag strategy factory:", e);
-            }
+            profile.setInitializationTagStrategyFactory(tagStrategyFactory);
+            profile.setTagStrategyFactory(tagStrategyFactory);
             col.add((T) profile);
         } else if (baseClass == DataModel.class) {
-            final EcmaScriptDataModel model = new EcmaScriptDataModel();
+            final EcmaScriptDataModel model;
+            if (scriptCache == null && !sharedRootScope) {
+                model = new EcmaScriptDataModel();
+            } else if (!CachingEcmaScriptDataModel.isSupported()) {
+                LOGGER.warn("the data model of this JVoiceXML version cannot cache"
+                        + " scripts or share the root scope, using the original data model");
+                model = new EcmaScriptDataModel();
+            } else {
+                model = new CachingEcmaScriptDataModel(scriptCache, sharedRootScope);
+            }
             col.add((T) model);
         }
         return col;
@@ -111,19 +311,22 @@ public class EmbeddedTextConfiguration implements Configuration {
     @Override
     public <T> T loadObject(final Class<T> baseClass) {
         if (baseClass == TagStrategyFactory.class) {
-            try {
-                return (T) new EmbeddedTagStrategyFactory();
-            } catch (Exception e) {
-                return null;
-            }
+            return (T) tagStrategyFactory;
         } else if (baseClass == TagStrategyFactory.class) {
             return (T) new VoiceXml21TagStrategyFactory();
         } else if (baseClass == DocumentServer.class) {
             final JVoiceXmlDocumentServer server =
                     new JVoiceXmlDocumentServer();
-            server.addSchemeStrategy(new HttpSchemeStrategy());
+            if (httpSchemeStrategy == null) {
+                server.addSchemeStrategy(new HttpSchemeStrategy());
+            } else {
+                server.addSchemeStrategy(httpSchemeStrategy);
+            }
             server.addSchemeStrategy(new FileSchemeStrategy());
-            return (T) server;
+            if (documentCache == null && grammarCache == null) {
+                return (T) server;
+            }
+            return (T) new CachingDocumentServer(server, documentCache, grammarCache, prefetcher);
         } else if (baseClass == ImplementationPlatformFactory.class) {
             final JVoiceXmlImplementationPlatformFactory factory = new JVoiceXmlImplementationPlatformFactory();
             try {
@@ -136,7 +339,7 @@ public class EmbeddedTextConfiguration implements Configuration {
             return (T) new SpeechRecognizerProperties();
         } else if (baseClass == DtmfRecognizerProperties.class) {
             final DtmfRecognizerProperties props = new DtmfRecognizerProperties();
-            props.setInterdigittimeout("1s");
+            props.setInterdigittimeout(interDigitTimeout);
             return (T) props;
         } else if (baseClass == DialogFactory.class) {
             final JVoiceXmlDialogFactory factory = new JVoiceXmlDialogFactory();
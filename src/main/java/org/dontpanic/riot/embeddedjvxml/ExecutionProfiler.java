@@ -0,0 +1,199 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jvoicexml.profile.TagStrategy;
+
+/**
+ * Records how often and how long the VoiceXML elements of the executed
+ * documents run, per tag.
+ *
+ * Set it with {@link EmbeddedTextConfiguration#setProfiler} to have every
+ * tag strategy handed out by the {@link EmbeddedTagStrategyFactory} wrapped
+ * in a timing proxy. All calls of a strategy for its node, including the
+ * evaluation of its attributes, count towards the execution time of the
+ * tag. The time of a tag includes the time of the elements it executes,
+ * e.g. the children of an <code>&lt;if&gt;</code>.
+ *
+ * The counters of a tag are looked up once, when its strategy is handed
+ * out, so a call costs two clock reads and a few additions. There is one
+ * counter per tag name known to the {@link TagStrategyRegistry}, however
+ * many documents are executed.
+ */
+public class ExecutionProfiler {
+    /** Name of the method that marks an execution of an element. */
+    private static final String EXECUTE = "execute";
+
+    /** Statistics by tag name. */
+    private final ConcurrentMap<String, Counter> tags;
+
+    /**
+     * Constructs a new object.
+     */
+    public ExecutionProfiler() {
+        tags = new ConcurrentHashMap<String, Counter>();
+    }
+
+    /**
+     * Wraps the given strategy so that its calls are recorded.
+     * @param tag name of the tag the strategy is used for
+     * @param strategy the strategy to profile, may be <code>null</code>
+     * @return the profiled strategy
+     */
+    public TagStrategy profile(final String tag, final TagStrategy strategy) {
+        if (strategy == null || Proxy.isProxyClass(strategy.getClass())) {
+            return strategy;
+        }
+        final Counter counter = tags.computeIfAbsent(tag, key -> new Counter());
+        return profile(counter, strategy);
+    }
+
+    /**
+     * Wraps the given strategy so that its calls are recorded.
+     * @param counter the statistics of the tag
+     * @param strategy the strategy to profile, may be <code>null</code>
+     * @return the profiled strategy
+     */
+    private static TagStrategy profile(final Counter counter, final TagStrategy strategy) {
+        if (strategy == null) {
+            return null;
+        }
+        return (TagStrategy) Proxy.newProxyInstance(TagStrategy.class.getClassLoader(),
+                new Class<?>[] {TagStrategy.class}, new ProfilingHandler(counter, strategy));
+    }
+
+    /**
+     * Records a call of a strategy.
+     * @param tag name of the tag of the node
+     * @param executed <code>true</code> if the call executed the node
+     * @param nanos duration of the call in nsec
+     */
+    void record(final String tag, final boolean executed, final long nanos) {
+        tags.computeIfAbsent(tag, key -> new Counter()).add(executed, nanos);
+    }
+
+    /**
+     * Removes all recorded statistics.
+     */
+    public void reset() {
+        for (Counter counter : tags.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Writes the statistics per tag as CSV with the columns
+     * <code>tag,executions,calls,total_us,mean_us</code>. Tags that were
+     * not called are left out.
+     * @param out the writer to write to
+     * @throws IOException
+     *          error writing
+     */
+    public void writeCsv(final Writer out) throws IOException {
+        final PrintWriter writer = new PrintWriter(out);
+        writer.println("tag,executions,calls,total_us,mean_us");
+        for (Map.Entry<String, Counter> entry : new TreeMap<String, Counter>(tags).entrySet()) {
+            final Counter counter = entry.getValue();
+            final long calls = counter.calls.sum();
+            if (calls == 0) {
+                continue;
+            }
+            final long executions = counter.executions.sum();
+            final long micros = TimeUnit.NANOSECONDS.toMicros(counter.nanos.sum());
+            final long mean = executions == 0 ? 0 : micros / executions;
+            writer.println("\"" + entry.getKey().replace("\"", "\"\"") + "\","
+                    + executions + "," + calls + "," + micros + "," + mean);
+        }
+        writer.flush();
+        if (writer.checkError()) {
+            throw new IOException("error writing profile");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "ExecutionProfiler[tags=" + tags.size() + "]";
+    }
+
+    /**
+     * Statistics of a tag.
+     */
+    private static final class Counter {
+        /** Number of executions. */
+        private final LongAdder executions = new LongAdder();
+        /** Number of strategy calls. */
+        private final LongAdder calls = new LongAdder();
+        /** Total time in nsec. */
+        private final LongAdder nanos = new LongAdder();
+
+        void add(final boolean executed, final long duration) {
+            if (executed) {
+                executions.increment();
+            }
+            calls.increment();
+            nanos.add(duration);
+        }
+
+        void reset() {
+            executions.reset();
+            calls.reset();
+            nanos.reset();
+        }
+    }
+
+    /**
+     * Times the calls of a strategy and adds them to the statistics of its
+     * tag.
+     */
+    private static final class ProfilingHandler implements InvocationHandler {
+        /** The statistics of the tag. */
+        private final Counter counter;
+        /** The profiled strategy. */
+        private final TagStrategy strategy;
+
+        ProfilingHandler(final Counter counter, final TagStrategy strategy) {
+            this.counter = counter;
+            this.strategy = strategy;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeUntimed(method, args);
+            }
+            if (method.getName().equals("newInstance")) {
+                return profile(counter, (TagStrategy) invokeUntimed(method, args));
+            }
+            final long start = System.nanoTime();
+            try {
+                return invokeUntimed(method, args);
+            } finally {
+                counter.add(EXECUTE.equals(method.getName()), System.nanoTime() - start);
+            }
+        }
+
+        private Object invokeUntimed(final Method method, final Object[] args) throws Throwable {
+            try {
+                return method.invoke(strategy, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
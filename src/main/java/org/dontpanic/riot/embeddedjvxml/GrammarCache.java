@@ -0,0 +1,223 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.net.URI;
+
+import org.jvoicexml.GrammarDocument;
+import org.jvoicexml.documentserver.JVoiceXmlGrammarDocument;
+import org.jvoicexml.event.error.BadFetchError;
+import org.jvoicexml.interpreter.grammar.GrammarIdentifier;
+import org.jvoicexml.xml.srgs.GrammarType;
+
+/**
+ * Cache of grammars shared by all sessions.
+ *
+ * Fetched grammar documents are kept per URI as long as their file is
+ * unchanged, validated the same way as the documents of the
+ * {@link DocumentCache}. Grammars fetched over HTTP are fetched again each
+ * time and revalidated by the scheme strategy. Grammar documents are
+ * mutable, so each session gets a copy of the cached document. Only text
+ * grammars are cached.
+ *
+ * The type a {@link GrammarIdentifier} determined for a grammar is kept, so
+ * that a grammar is parsed for identification only once, no matter how many
+ * sessions and field activations use it. Grammars handed out by this cache
+ * are keyed by URI and version. Other grammars, like inline grammars, are
+ * keyed by their source. Copies share the source of the cached document, so
+ * its hash code is calculated once.
+ */
+public class GrammarCache {
+    /** Default max. number of cached grammars. */
+    public static final int DEFAULT_MAX_ENTRIES = 128;
+
+    /** Fetched grammar documents by URI. */
+    private final LruCache<URI, Fetched> documents;
+    /** Identified grammar types by URI and version or source. */
+    private final LruCache<Key, GrammarType> types;
+
+    /**
+     * Constructs a cache of the default size.
+     */
+    public GrammarCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructs a new object.
+     * @param maxEntries max. number of cached grammars
+     */
+    public GrammarCache(final int maxEntries) {
+        documents = new LruCache<URI, Fetched>(maxEntries);
+        types = new LruCache<Key, GrammarType>(maxEntries);
+    }
+
+    /**
+     * Retrieves a copy of the grammar document with the given URI, loading
+     * it if it is not cached or outdated.
+     * @param uri URI of the grammar
+     * @param loader loads the grammar on a miss
+     * @return the grammar document
+     * @throws BadFetchError
+     *          error loading the grammar
+     */
+    public GrammarDocument getDocument(final URI uri,
+                                       final DocumentCache.Loader<GrammarDocument> loader)
+            throws BadFetchError {
+        final String version = DocumentCache.versionOf(uri);
+        if (version == null || DocumentCache.HTTP_VERSION.equals(version)) {
+            return loader.load();
+        }
+        final Fetched fetched = documents.get(uri);
+        if (fetched != null && fetched.version.equals(version)) {
+            return fetched.copy();
+        }
+        final GrammarDocument document = loader.load();
+        if (document == null || !document.isAscii()) {
+            return document;
+        }
+        final Fetched loaded = new Fetched(version, document);
+        documents.put(uri, loaded);
+        return loaded.copy();
+    }
+
+    /**
+     * Identifies the type of a grammar, asking the identifier only if the
+     * grammar has not been identified before.
+     * @param identifier the identifier doing the actual work
+     * @param grammar the grammar to identify
+     * @return the type of the grammar, <code>null</code> if the identifier
+     *          does not support it
+     */
+    public GrammarType identify(final GrammarIdentifier identifier,
+                                final GrammarDocument grammar) {
+        final Key key;
+        if (grammar instanceof CachedGrammarDocument) {
+            key = new Key(identifier.getSupportedType(), grammar.getURI(),
+                    ((CachedGrammarDocument) grammar).version, true);
+        } else {
+            final String content = grammar.getDocument();
+            if (content == null) {
+                return identifier.identify(grammar);
+            }
+            key = new Key(identifier.getSupportedType(), grammar.getURI(), content, false);
+        }
+        final GrammarType cached = types.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final GrammarType type = identifier.identify(grammar);
+        if (type != null) {
+            types.put(key, type);
+        }
+        return type;
+    }
+
+    /**
+     * Removes all cached grammars.
+     */
+    public void clear() {
+        documents.clear();
+        types.clear();
+    }
+
+    /**
+     * Retrieves the cached grammar documents.
+     * @return cache of fetched grammar documents
+     */
+    public LruCache<URI, ?> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Retrieves the cached grammar types.
+     * @return cache of identified grammar types
+     */
+    public LruCache<?, GrammarType> getTypes() {
+        return types;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "GrammarCache[documents: " + documents + "; types: " + types + "]";
+    }
+
+    /**
+     * A fetched grammar document.
+     */
+    private static final class Fetched {
+        /** Version of the grammar when it was fetched. */
+        private final String version;
+        /** The grammar document. */
+        private final GrammarDocument document;
+
+        Fetched(final String version, final GrammarDocument document) {
+            this.version = version;
+            this.document = document;
+        }
+
+        /**
+         * Creates a copy of the cached document for a session.
+         * @return the copy
+         */
+        GrammarDocument copy() {
+            return new CachedGrammarDocument(document, version);
+        }
+    }
+
+    /**
+     * A copy of a cached grammar document that knows the version it was
+     * fetched in.
+     */
+    private static final class CachedGrammarDocument extends JVoiceXmlGrammarDocument {
+        /** Version of the grammar when it was fetched. */
+        private final String version;
+
+        CachedGrammarDocument(final GrammarDocument document, final String version) {
+            super(document.getURI(), document.getDocument());
+            setMediaType(document.getMediaType());
+            setModeType(document.getModeType());
+            this.version = version;
+        }
+    }
+
+    /**
+     * Key of an identified grammar.
+     */
+    private static final class Key {
+        /** The type the identifier supports. */
+        private final GrammarType identifierType;
+        /** URI of the grammar, <code>null</code> for inline grammars. */
+        private final URI uri;
+        /** Version or source of the grammar. */
+        private final String validator;
+        /** <code>true</code> if the validator is the version. */
+        private final boolean versioned;
+
+        Key(final GrammarType identifierType, final URI uri, final String validator,
+            final boolean versioned) {
+            this.identifierType = identifierType;
+            this.uri = uri;
+            this.validator = validator;
+            this.versioned = versioned;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return identifierType == other.identifierType
+                    && versioned == other.versioned
+                    && (uri == null ? other.uri == null : uri.equals(other.uri))
+                    && validator.equals(other.validator);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (uri == null ? 0 : uri.hashCode()) + validator.hashCode();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in microseconds.
+ *
+ * Values are counted in log-linear buckets: each power of two is split into
+ * 16 buckets, so percentiles are exact below 16&micro;s and within 1/16 of
+ * the value above. Recording is a single atomic increment and may be done
+ * concurrently from any number of threads.
+ */
+public class LatencyHistogram {
+    /** Number of bits of the sub bucket index. */
+    private static final int SUB_BITS = 4;
+    /** Number of buckets per power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** Total number of buckets covering all positive long values. */
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    /** Number of values per bucket. */
+    private final AtomicLongArray counts;
+    /** Number of recorded values. */
+    private final AtomicLong count;
+    /** Sum of recorded values. */
+    private final AtomicLong sum;
+    /** Largest recorded value. */
+    private final AtomicLong max;
+
+    /**
+     * Constructs a new object.
+     */
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        count = new AtomicLong();
+        sum = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Records a latency measured with {@link System#nanoTime()}.
+     * @param nanos the latency in nsec
+     */
+    public void recordNanos(final long nanos) {
+        record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Records a latency.
+     * @param micros the latency in &micro;sec, negative values count as zero
+     */
+    public void record(final long micros) {
+        final long value = Math.max(0, micros);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Determines the bucket of a value.
+     * @param value a non-negative value
+     * @return index of the bucket
+     */
+    private static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Determines the largest value counted in a bucket.
+     * @param bucket index of the bucket
+     * @return upper bound of the bucket
+     */
+    private static long upperBoundOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        final long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Retrieves the number of recorded values.
+     * @return number of values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Retrieves the mean of the recorded values.
+     * @return mean in &micro;sec, 0 if nothing was recorded
+     */
+    public double getMean() {
+        final long values = count.get();
+        if (values == 0) {
+            return 0;
+        }
+        return (double) sum.get() / values;
+    }
+
+    /**
+     * Retrieves the largest recorded value.
+     * @return maximum in &micro;sec
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Retrieves a percentile of the recorded values.
+     * @param percentile the percentile, e.g. <code>99.9</code>
+     * @return value in &micro;sec below or at which the given percentage of
+     *          the recorded values lie, 0 if nothing was recorded
+     */
+    public long getPercentile(final double percentile) {
+        final long values = count.get();
+        if (values == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * values));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears all recorded values. Values recorded concurrently may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.1fms p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                getCount(), getMean() / 1000.0, getPercentile(50) / 1000.0,
+                getPercentile(90) / 1000.0, getPercentile(99) / 1000.0,
+                getMax() / 1000.0);
+    }
+}
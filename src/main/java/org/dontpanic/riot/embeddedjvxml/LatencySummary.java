@@ -0,0 +1,101 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of a {@link LatencyHistogram} as exported by the
+ * {@link CallMetricsMXBean}. All values are in &micro;sec.
+ */
+public class LatencySummary {
+    /** Number of recorded values. */
+    private final long count;
+    /** Mean of the recorded values. */
+    private final double mean;
+    /** Median of the recorded values. */
+    private final long p50;
+    /** 90th percentile of the recorded values. */
+    private final long p90;
+    /** 99th percentile of the recorded values. */
+    private final long p99;
+    /** Largest recorded value. */
+    private final long max;
+
+    /**
+     * Constructs a new object.
+     * @param count number of recorded values
+     * @param mean mean of the recorded values
+     * @param p50 median of the recorded values
+     * @param p90 90th percentile of the recorded values
+     * @param p99 99th percentile of the recorded values
+     * @param max largest recorded value
+     */
+    @ConstructorProperties({"count", "mean", "p50", "p90", "p99", "max"})
+    public LatencySummary(final long count, final double mean, final long p50,
+                          final long p90, final long p99, final long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    /**
+     * Takes a snapshot of the given histogram.
+     * @param histogram the histogram
+     * @return the snapshot
+     */
+    public static LatencySummary of(final LatencyHistogram histogram) {
+        return new LatencySummary(histogram.getCount(), histogram.getMean(),
+                histogram.getPercentile(50), histogram.getPercentile(90),
+                histogram.getPercentile(99), histogram.getMax());
+    }
+
+    /**
+     * Retrieves the number of recorded values.
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Retrieves the mean of the recorded values.
+     * @return mean in &micro;sec
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Retrieves the median of the recorded values.
+     * @return median in &micro;sec
+     */
+    public long getP50() {
+        return p50;
+    }
+
+    /**
+     * Retrieves the 90th percentile of the recorded values.
+     * @return 90th percentile in &micro;sec
+     */
+    public long getP90() {
+        return p90;
+    }
+
+    /**
+     * Retrieves the 99th percentile of the recorded values.
+     * @return 99th percentile in &micro;sec
+     */
+    public long getP99() {
+        return p99;
+    }
+
+    /**
+     * Retrieves the largest recorded value.
+     * @return largest value in &micro;sec
+     */
+    public long getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,300 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.jvoicexml.event.ErrorEvent;
+
+/**
+ * Drives an embedded JVoiceXML with scripted dialogs at a constant rate of
+ * new calls for a given time and reports throughput, error rate and
+ * latencies.
+ *
+ * <pre>
+ * LoadGenerator [--rate calls/s] [--duration s] [--sessions n] [--timeout ms]
+ *               [--profile file] [--cache] script...
+ * </pre>
+ *
+ * Each new call runs the next of the given {@link DialogScript}s in turn.
+ * At most <code>sessions</code> calls run concurrently; calls that cannot
+ * be started because too many are waiting are counted as missed. The
+ * setup time and duration of a call are measured from the time the call was
+ * due according to the rate, not from the time a worker picked it up, so
+ * that calls delayed by a saturated interpreter are not left out of the
+ * latencies (coordinated omission). With
+ * <code>--profile</code> the execution of the VoiceXML elements is profiled
+ * and written as CSV to the given file. With <code>--cache</code> the
+ * documents, grammars and compiled scripts are cached for all sessions and
+ * the hit rates of the caches are reported. The calls are driven on virtual threads if enabled with
+ * {@value Threads#VIRTUAL_THREADS_PROPERTY}.
+ */
+public class LoadGenerator {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(LoadGenerator.class);
+
+    /** Number of calls per session that may wait for a free worker. */
+    private static final int BACKLOG_PER_SESSION = 4;
+
+    /** The interpreter. */
+    private final EmbeddedJVoiceXml engine;
+    /** The dialogs to run. */
+    private final List<DialogScript> scripts;
+    /** Max. number of concurrent calls. */
+    private final int sessions;
+    /** Collected statistics. */
+    private final LoadStatistics statistics;
+    /** Target rate of new calls per second. */
+    private double rate;
+    /** Time to generate new calls in msec. */
+    private long duration;
+    /** Max. time to wait for each output or input in msec. */
+    private long timeout;
+
+    /**
+     * Constructs a new object.
+     * @param engine the started interpreter
+     * @param sessions max. number of concurrent calls
+     * @param scripts the dialogs to run
+     */
+    public LoadGenerator(final EmbeddedJVoiceXml engine, final int sessions,
+                         final List<DialogScript> scripts) {
+        if (scripts.isEmpty()) {
+            throw new IllegalArgumentException("no dialog scripts");
+        }
+        this.engine = engine;
+        this.sessions = sessions;
+        this.scripts = new ArrayList<DialogScript>(scripts);
+        statistics = new LoadStatistics();
+        rate = 1;
+        duration = 10000;
+        timeout = 10000;
+    }
+
+    /**
+     * Sets the target rate of new calls.
+     * @param rate calls per second
+     */
+    public void setRate(final double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Sets the time to generate new calls.
+     * @param duration the duration in msec
+     */
+    public void setDuration(final long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * Sets the max. time to wait for each output or input.
+     * @param timeout the timeout in msec
+     */
+    public void setTimeout(final long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Retrieves the collected statistics.
+     * @return the statistics
+     */
+    public LoadStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Generates calls for the configured duration and waits for all started
+     * calls to finish.
+     * @return the time from the first call until all calls finished in nsec
+     * @throws InterruptedException
+     *          interrupted while waiting
+     */
+    public long run() throws InterruptedException {
+        final ThreadPoolExecutor workers = new ThreadPoolExecutor(sessions, sessions,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(sessions * BACKLOG_PER_SESSION),
+                Threads.newThreadFactory("LoadGenerator"));
+        final ScheduledExecutorService pacer = Executors.newSingleThreadScheduledExecutor();
+        final AtomicLong sequence = new AtomicLong();
+        final long period = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+
+        LOGGER.info("generating " + rate + " calls/s for " + duration + "ms");
+        final long start = System.nanoTime();
+        pacer.scheduleAtFixedRate(() -> {
+            final long number = sequence.getAndIncrement();
+            final long due = start + number * period;
+            final DialogScript script = scripts.get((int) (number % scripts.size()));
+            try {
+                workers.execute(() -> runCall(script, due));
+            } catch (RejectedExecutionException e) {
+                statistics.callMissed();
+            }
+        }, 0, period, TimeUnit.NANOSECONDS);
+
+        Thread.sleep(duration);
+        pacer.shutdownNow();
+        workers.shutdown();
+        while (!workers.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+            LOGGER.info("waiting for " + workers.getActiveCount() + " calls to finish");
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Runs a single call.
+     * @param script the dialog to run
+     * @param start time the call was due in nsec
+     */
+    private void runCall(final DialogScript script, final long start) {
+        statistics.callStarted();
+        EmbeddedServerTextCall call = null;
+        try {
+            call = engine.newCall();
+            statistics.getSetup().recordNanos(System.nanoTime() - start);
+            script.run(call, timeout, statistics);
+            statistics.callCompleted(System.nanoTime() - start);
+        } catch (AssertionError e) {
+            statistics.callFailed(e.getCause() == null ? e : e.getCause());
+            LOGGER.debug("call of " + script.getName() + " failed", e);
+        } catch (ErrorEvent | RuntimeException e) {
+            statistics.callFailed(e);
+            LOGGER.debug("call of " + script.getName() + " failed", e);
+        } catch (InterruptedException e) {
+            statistics.callFailed(e);
+            Thread.currentThread().interrupt();
+        } finally {
+            if (call != null) {
+                engine.endCall(call);
+            }
+        }
+    }
+
+    /**
+     * Runs the load generator.
+     * @param args command line arguments
+     * @throws Exception
+     *          error running the load
+     */
+    public static void main(final String[] args) throws Exception {
+        double rate = 1;
+        long duration = 10000;
+        long timeout = 10000;
+        int sessions = Runtime.getRuntime().availableProcessors();
+        File profile = null;
+        boolean cache = false;
+        final List<DialogScript> scripts = new ArrayList<DialogScript>();
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if ("--rate".equals(arg)) {
+                rate = Double.parseDouble(args[++i]);
+            } else if ("--duration".equals(arg)) {
+                duration = TimeUnit.SECONDS.toMillis(Long.parseLong(args[++i]));
+            } else if ("--sessions".equals(arg)) {
+                sessions = Integer.parseInt(args[++i]);
+            } else if ("--timeout".equals(arg)) {
+                timeout = Long.parseLong(args[++i]);
+            } else if ("--profile".equals(arg)) {
+                profile = new File(args[++i]);
+            } else if ("--cache".equals(arg)) {
+                cache = true;
+            } else if (arg.startsWith("--")) {
+                usage(System.err);
+                System.exit(1);
+            } else {
+                scripts.add(loadScript(arg));
+            }
+        }
+        if (scripts.isEmpty()) {
+            usage(System.err);
+            System.exit(1);
+        }
+
+        final EmbeddedJVoiceXml engine = new EmbeddedJVoiceXml(sessions);
+        final ExecutionProfiler profiler = profile == null ? null : new ExecutionProfiler();
+        engine.getConfiguration().setProfiler(profiler);
+        if (cache) {
+            engine.getConfiguration().setDocumentCache(new DocumentCache());
+            engine.getConfiguration().setGrammarCache(new GrammarCache());
+            engine.getConfiguration().setScriptCache(new ScriptCache());
+        }
+        engine.start();
+        try {
+            final LoadGenerator generator = new LoadGenerator(engine, sessions, scripts);
+            generator.setRate(rate);
+            generator.setDuration(duration);
+            generator.setTimeout(timeout);
+            final long elapsed = generator.run();
+            generator.getStatistics().report(System.out, elapsed, rate);
+            reportCaches(System.out, engine.getConfiguration());
+            if (profiler != null) {
+                try (Writer out = new OutputStreamWriter(new FileOutputStream(profile),
+                        StandardCharsets.UTF_8)) {
+                    profiler.writeCsv(out);
+                }
+            }
+        } finally {
+            engine.shutdown();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Prints the statistics of the enabled caches of the interpreter.
+     * @param out the stream to print to
+     * @param configuration the configuration of the interpreter
+     */
+    private static void reportCaches(final PrintStream out,
+                                     final EmbeddedTextConfiguration configuration) {
+        reportCache(out, "documents", configuration.getDocumentCache());
+        reportCache(out, "grammars", configuration.getGrammarCache());
+        reportCache(out, "scripts", configuration.getScriptCache());
+    }
+
+    /**
+     * Prints the statistics of a cache if it is enabled.
+     * @param out the stream to print to
+     * @param name name of the cache
+     * @param cache the cache, <code>null</code> if disabled
+     */
+    private static void reportCache(final PrintStream out, final String name,
+                                    final Object cache) {
+        if (cache != null) {
+            out.printf("%-12s %s%n", name, cache);
+        }
+    }
+
+    /**
+     * Loads a dialog script.
+     * @param name file name of the script
+     * @return the loaded script
+     * @throws IOException
+     *          error reading the script
+     */
+    private static DialogScript loadScript(final String name) throws IOException {
+        return DialogScript.load(new File(name));
+    }
+
+    /**
+     * Prints the usage.
+     * @param out the stream to print to
+     */
+    private static void usage(final PrintStream out) {
+        out.println("usage: LoadGenerator [--rate calls/s] [--duration s]"
+                + " [--sessions n] [--timeout ms] [--profile file] [--cache] script...");
+    }
+}
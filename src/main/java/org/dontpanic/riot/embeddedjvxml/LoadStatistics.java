@@ -0,0 +1,194 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latencies collected by the {@link LoadGenerator}.
+ */
+public class LoadStatistics {
+    /** Number of calls started. */
+    private final AtomicLong started;
+    /** Number of calls that completed their script. */
+    private final AtomicLong completed;
+    /** Number of calls that failed. */
+    private final AtomicLong failed;
+    /** Number of calls that were not started as all workers were busy. */
+    private final AtomicLong missed;
+    /** Failures by type. */
+    private final ConcurrentMap<String, LongAdder> errors;
+    /** Time from when a call was due until it had a session and text server. */
+    private final LatencyHistogram setup;
+    /** Time until an expected output was heard. */
+    private final LatencyHistogram prompts;
+    /** Time until an input was accepted. */
+    private final LatencyHistogram inputs;
+    /** Duration of complete calls. */
+    private final LatencyHistogram calls;
+
+    /**
+     * Constructs a new object.
+     */
+    public LoadStatistics() {
+        started = new AtomicLong();
+        completed = new AtomicLong();
+        failed = new AtomicLong();
+        missed = new AtomicLong();
+        errors = new ConcurrentHashMap<String, LongAdder>();
+        setup = new LatencyHistogram();
+        prompts = new LatencyHistogram();
+        inputs = new LatencyHistogram();
+        calls = new LatencyHistogram();
+    }
+
+    /**
+     * Counts a started call.
+     */
+    public void callStarted() {
+        started.incrementAndGet();
+    }
+
+    /**
+     * Counts a call that completed its script.
+     * @param nanos duration of the call in nsec
+     */
+    public void callCompleted(final long nanos) {
+        completed.incrementAndGet();
+        calls.recordNanos(nanos);
+    }
+
+    /**
+     * Counts a failed call.
+     * @param cause the cause of the failure
+     */
+    public void callFailed(final Throwable cause) {
+        failed.incrementAndGet();
+        errors.computeIfAbsent(cause.getClass().getSimpleName(), key -> new LongAdder())
+                .increment();
+    }
+
+    /**
+     * Counts a call that could not be started in time.
+     */
+    public void callMissed() {
+        missed.incrementAndGet();
+    }
+
+    /**
+     * Retrieves the number of started calls.
+     * @return number of started calls
+     */
+    public long getStarted() {
+        return started.get();
+    }
+
+    /**
+     * Retrieves the number of calls that completed their script.
+     * @return number of completed calls
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Retrieves the number of failed calls.
+     * @return number of failed calls
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Retrieves the number of calls that could not be started in time.
+     * @return number of missed calls
+     */
+    public long getMissed() {
+        return missed.get();
+    }
+
+    /**
+     * Retrieves the time from when a call was due until it had a session
+     * and text server.
+     * @return setup latencies
+     */
+    public LatencyHistogram getSetup() {
+        return setup;
+    }
+
+    /**
+     * Retrieves the time until an expected output was heard.
+     * @return output latencies
+     */
+    public LatencyHistogram getPrompts() {
+        return prompts;
+    }
+
+    /**
+     * Retrieves the time until an input was accepted.
+     * @return input latencies
+     */
+    public LatencyHistogram getInputs() {
+        return inputs;
+    }
+
+    /**
+     * Retrieves the duration of complete calls.
+     * @return call durations
+     */
+    public LatencyHistogram getCalls() {
+        return calls;
+    }
+
+    /**
+     * Retrieves the number of failures by type.
+     * @return failures by type
+     */
+    public Map<String, Long> getErrors() {
+        final Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> entry : errors.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Retrieves the fraction of finished calls that failed.
+     * @return error rate between 0 and 1
+     */
+    public double getErrorRate() {
+        final long finished = completed.get() + failed.get();
+        if (finished == 0) {
+            return 0;
+        }
+        return (double) failed.get() / finished;
+    }
+
+    /**
+     * Writes a report.
+     * @param out the stream to write to
+     * @param elapsedNanos the duration of the run in nsec
+     * @param targetRate the targeted calls per second
+     */
+    public void report(final PrintStream out, final long elapsedNanos, final double targetRate) {
+        final double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        out.printf("duration     %.1fs%n", seconds);
+        out.printf("calls        started=%d completed=%d failed=%d missed=%d%n",
+                getStarted(), getCompleted(), getFailed(), getMissed());
+        out.printf("throughput   %.2f calls/s (target %.2f)%n",
+                (getCompleted() + getFailed()) / seconds, targetRate);
+        out.printf("error rate   %.2f%%%n", getErrorRate() * 100);
+        for (Map.Entry<String, Long> entry : getErrors().entrySet()) {
+            out.printf("  %-24s %d%n", entry.getKey(), entry.getValue());
+        }
+        out.println("setup        " + setup);
+        out.println("prompts      " + prompts);
+        out.println("inputs       " + inputs);
+        out.println("calls        " + calls);
+    }
+}
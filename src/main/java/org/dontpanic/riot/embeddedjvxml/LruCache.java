@@ -0,0 +1,231 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Size bounded, thread-safe cache that evicts the least recently used entry.
+ * Hits, misses and evictions are counted.
+ *
+ * Besides the number of entries, the total weight of the values may be
+ * bounded, e.g. their size in bytes. A value heavier than the max. weight
+ * is not kept at all.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public class LruCache<K, V> {
+    /** The entries in order of access. */
+    private final LinkedHashMap<K, V> entries;
+    /** Max. number of entries. */
+    private final int maxEntries;
+    /** Max. total weight of the values. */
+    private final long maxWeight;
+    /** Determines the weight of a value. */
+    private final ToLongFunction<? super V> weigher;
+    /** Total weight of the values. */
+    private long weight;
+    /** Number of successful lookups. */
+    private final LongAdder hits;
+    /** Number of failed lookups. */
+    private final LongAdder misses;
+    /** Number of entries evicted to make room. */
+    private final LongAdder evictions;
+
+    /**
+     * Constructs a new object.
+     * @param maxEntries max. number of entries
+     */
+    public LruCache(final int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, value -> 0);
+    }
+
+    /**
+     * Constructs a cache that also bounds the total weight of its values.
+     * @param maxEntries max. number of entries
+     * @param maxWeight max. total weight of the values
+     * @param weigher determines the weight of a value
+     */
+    public LruCache(final int maxEntries, final long maxWeight,
+                    final ToLongFunction<? super V> weigher) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("max. entries must be positive: " + maxEntries);
+        }
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("max. weight must be positive: " + maxWeight);
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        hits = new LongAdder();
+        misses = new LongAdder();
+        evictions = new LongAdder();
+        entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.maxEntries) {
+                    evictions.increment();
+                    weight -= LruCache.this.weigher.applyAsLong(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Looks up an entry.
+     * @param key the key
+     * @return the cached value, <code>null</code> if there is none
+     */
+    public V get(final K key) {
+        final V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Adds or replaces an entry, evicting the least recently used entries
+     * if the cache is full. A value heavier than the max. weight is not
+     * kept and removes the entry of the key.
+     * @param key the key
+     * @param value the value
+     */
+    public void put(final K key, final V value) {
+        final long valueWeight = weigher.applyAsLong(value);
+        synchronized (entries) {
+            if (valueWeight > maxWeight) {
+                remove(key);
+                return;
+            }
+            final V old = entries.put(key, value);
+            if (old != null) {
+                weight -= weigher.applyAsLong(old);
+            }
+            weight += valueWeight;
+            final Iterator<V> eldest = entries.values().iterator();
+            while (weight > maxWeight) {
+                weight -= weigher.applyAsLong(eldest.next());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes an entry.
+     * @param key the key
+     */
+    public void remove(final K key) {
+        synchronized (entries) {
+            final V old = entries.remove(key);
+            if (old != null) {
+                weight -= weigher.applyAsLong(old);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries. The counters are kept.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Retrieves the number of entries.
+     * @return number of entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Retrieves the max. number of entries.
+     * @return max. number of entries
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Retrieves the total weight of the values.
+     * @return total weight
+     */
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    /**
+     * Retrieves the max. total weight of the values.
+     * @return max. total weight
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Retrieves the number of successful lookups.
+     * @return number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Retrieves the number of failed lookups.
+     * @return number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Retrieves the number of entries evicted to make room.
+     * @return number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Retrieves the fraction of lookups that were hits.
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        final long hitCount = hits.sum();
+        final long lookups = hitCount + misses.sum();
+        if (lookups == 0) {
+            return 0;
+        }
+        return (double) hitCount / lookups;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "size=" + size() + "/" + maxEntries + ", hits=" + getHits()
+                + ", misses=" + getMisses() + ", evictions=" + getEvictions();
+    }
+}
@@ -1,9 +1,14 @@
 package org.dontpanic.riot.embeddedjvxml;
 
 import java.net.InetSocketAddress;
-import java.util.concurrent.Semaphore;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.jvoicexml.client.text.TextListener;
 import org.jvoicexml.event.GenericVoiceXmlEvent;
@@ -11,24 +16,211 @@ import org.jvoicexml.event.JVoiceXMLEvent;
 import org.jvoicexml.event.plain.ConnectionDisconnectHangupEvent;
 import org.jvoicexml.xml.ssml.SsmlDocument;
 
+/**
+ * Buffers the output of JVoiceXML until it is read by the client.
+ *
+ * Outputs are buffered as {@link Prompt}s, so their text is extracted at
+ * most once. The update of the current prompt that the text platform sends
+ * after DTMF input is discarded, see {@link #dtmfSent()}.
+ *
+ * Outputs are kept in a ring buffer of configurable capacity so that the
+ * interpreter may run ahead of the client. Events, like the disconnect,
+ * are queued in order with the outputs and do not count against the
+ * capacity. The default capacity of one with {@link OverflowPolicy#BLOCK}
+ * makes the interpreter wait for each prompt to be read.
+ *
+ * Outputs may also be read asynchronously. Pending reads are completed
+ * on the thread that delivers the output.
+ */
 public class OutputMessageBuffer implements TextListener {
-    /** The last received output message. */
-    private SsmlDocument output;
+    /** Event type reported if outputs were lost by {@link OverflowPolicy#FAIL}. */
+    public static final String OVERFLOW_EVENT = "error.outputbuffer.overflow";
+
+    /** Behavior if an output arrives while the buffer is full. */
+    public enum OverflowPolicy {
+        /** Let the interpreter wait until the client read an output. */
+        BLOCK,
+        /** Discard the oldest buffered output. */
+        DROP_OLDEST,
+        /** Discard the output and report an overflow to the client. */
+        FAIL
+    }
+
+    /** Buffered outputs and events in order of arrival. */
+    private final Deque<Message> messages;
+    /** Asynchronous reads waiting for a message. */
+    private final Deque<CompletableFuture<Prompt>> pending;
     /** Synchronization. */
-    private final Semaphore receiveSem;
-    private final Semaphore readSem;
-    /** Caught event while waiting for an input. */
-    private JVoiceXMLEvent event;
+    private final ReentrantLock lock;
+    /** Signaled when a message was added. */
+    private final Condition notEmpty;
+    /** Signaled when an output was read. */
+    private final Condition notFull;
+    /** Max. number of buffered outputs. */
+    private int capacity;
+    /** Behavior if the buffer is full. */
+    private OverflowPolicy overflowPolicy;
+    /** Number of buffered outputs. */
+    private int outputs;
+    /** Number of discarded outputs. */
+    private long dropped;
+    /** <code>true</code> if an overflow event is queued and not yet read. */
+    private boolean overflowPending;
+    /** <code>true</code> if the next output is the update following DTMF input. */
+    private boolean spuriousExpected;
+    /** Number of discarded spurious updates. */
+    private long spurious;
+    /** Time the last input was sent in nsec, 0 if it was answered. */
+    private long inputSent;
+    /** Metrics to record the response time to, <code>null</code> if not recorded. */
+    private volatile CallMetrics metrics;
+
+    /**
+     * Constructs a buffer for a single output.
+     */
+    public OutputMessageBuffer() {
+        this(1, OverflowPolicy.BLOCK);
+    }
 
     /**
      * Constructs a new object.
-     * @throws InterruptedException error initializing the semaphores
+     * @param capacity max. number of buffered outputs
+     * @param policy behavior if an output arrives while the buffer is full
+     */
+    public OutputMessageBuffer(final int capacity, final OverflowPolicy policy) {
+        messages = new ArrayDeque<Message>();
+        pending = new ArrayDeque<CompletableFuture<Prompt>>();
+        lock = new ReentrantLock();
+        notEmpty = lock.newCondition();
+        notFull = lock.newCondition();
+        setCapacity(capacity);
+        setOverflowPolicy(policy);
+    }
+
+    /**
+     * Sets the max. number of buffered outputs.
+     * @param capacity the capacity
+     */
+    public void setCapacity(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        lock.lock();
+        try {
+            this.capacity = capacity;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the metrics the time from an input to the next output is
+     * recorded to.
+     * @param callMetrics the metrics, <code>null</code> to not record
+     */
+    public void setMetrics(final CallMetrics callMetrics) {
+        metrics = callMetrics;
+    }
+
+    /**
+     * Announces that input is sent to JVoiceXML. The time until the next
+     * output arrives, not counting a discarded spurious update, is recorded
+     * as the response time of JVoiceXML.
+     */
+    public void inputSent() {
+        lock.lock();
+        try {
+            inputSent = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the behavior if an output arrives while the buffer is full.
+     * @param policy the overflow policy
+     */
+    public void setOverflowPolicy(final OverflowPolicy policy) {
+        lock.lock();
+        try {
+            overflowPolicy = policy;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of buffered outputs.
+     * @return number of outputs not yet read
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return outputs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of outputs discarded because the buffer was full.
+     * @return number of discarded outputs
+     */
+    public long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of spurious updates that were discarded.
+     * @return number of discarded spurious updates
      */
-    public OutputMessageBuffer() throws InterruptedException {
-        receiveSem = new Semaphore(1);
-        receiveSem.acquire();
-        readSem = new Semaphore(1);
-        readSem.release();
+    public long getSpurious() {
+        lock.lock();
+        try {
+            return spurious;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Announces DTMF input that is about to be sent to JVoiceXML. The text
+     * platform answers DTMF input with an update of the prompt that was
+     * current when the digits arrived, and only then with the next prompt.
+     * The first output after this call is therefore discarded and the
+     * following one is buffered as the answer to the input. A disconnect
+     * ends the sequence. As with {@link #inputSent()}, the time until the
+     * answer arrives is recorded as the response time of JVoiceXML.
+     */
+    public void dtmfSent() {
+        lock.lock();
+        try {
+            spuriousExpected = true;
+            inputSent = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the given output is the update following DTMF input. Must
+     * be called with the lock held.
+     * @return <code>true</code> if the output is to be discarded
+     */
+    private boolean isSpurious() {
+        if (!spuriousExpected) {
+            return false;
+        }
+        spuriousExpected = false;
+        spurious++;
+        return true;
     }
 
     /**
@@ -41,24 +233,71 @@ public class OutputMessageBuffer implements TextListener {
      */
     public SsmlDocument nextMessage()
             throws InterruptedException, JVoiceXMLEvent {
+        return documentOf(nextPrompt());
+    }
+
+    /**
+     * Retrieves the next message.
+     * @return next message, <code>null</code> if the call was interrupted.
+     * @param timeout the timeout to wait at max in msec, waits forever, if
+     *          timeout is zero
+     * @throws InterruptedException
+     *         waiting interrupted
+     * @throws TimeoutException
+     *         waiting time exceeded
+     * @throws JVoiceXMLEvent
+     *          error waiting
+     */
+    public SsmlDocument nextMessage(final long timeout)
+            throws InterruptedException, TimeoutException, JVoiceXMLEvent {
+        return documentOf(nextPrompt(timeout));
+    }
+
+    /**
+     * Retrieves the next message without blocking the caller. The returned
+     * future is completed with the next output or exceptionally with the
+     * next event.
+     * @return future of the next message
+     */
+    public CompletableFuture<SsmlDocument> nextMessageAsync() {
+        final CompletableFuture<SsmlDocument> future =
+                new CompletableFuture<SsmlDocument>();
+        nextPromptAsync().whenComplete((prompt, event) -> {
+            if (event == null) {
+                future.complete(documentOf(prompt));
+            } else {
+                future.completeExceptionally(event);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Retrieves the next output as a prompt.
+     * @return next prompt
+     * @throws InterruptedException
+     *          interrupted while waiting
+     * @throws JVoiceXMLEvent
+     *          error waiting
+     */
+    public Prompt nextPrompt()
+            throws InterruptedException, JVoiceXMLEvent {
+        lock.lockInterruptibly();
         try {
-            receiveSem.acquire();
-            if (event != null) {
-                throw event;
+            while (messages.isEmpty()) {
+                notEmpty.await();
             }
-            return output;
+            return take();
         } finally {
-            output = null;
-            event = null;
-            readSem.release();
+            lock.unlock();
         }
     }
 
     /**
-     * Retrieves the next message.
-     * @return next message, <code>null</code> if the call was interrupted.
+     * Retrieves the next output as a prompt.
      * @param timeout the timeout to wait at max in msec, waits forever, if
      *          timeout is zero
+     * @return next prompt
      * @throws InterruptedException
      *         waiting interrupted
      * @throws TimeoutException
@@ -66,24 +305,125 @@ public class OutputMessageBuffer implements TextListener {
      * @throws JVoiceXMLEvent
      *          error waiting
      */
-    public SsmlDocument nextMessage(final long timeout)
+    public Prompt nextPrompt(final long timeout)
             throws InterruptedException, TimeoutException, JVoiceXMLEvent {
+        if (timeout == 0) {
+            return nextPrompt();
+        }
+        lock.lockInterruptibly();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+            while (messages.isEmpty()) {
+                if (nanos <= 0) {
+                    throw new TimeoutException("timeout of '" + timeout
+                            + "' msec exceeded while waiting for next message");
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return take();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the next output as a prompt without blocking the caller.
+     * The returned future is completed with the next output or
+     * exceptionally with the next event.
+     * @return future of the next prompt
+     */
+    public CompletableFuture<Prompt> nextPromptAsync() {
+        final CompletableFuture<Prompt> future = new CompletableFuture<Prompt>();
+        lock.lock();
         try {
-            final boolean success =
-                    receiveSem.tryAcquire(timeout, TimeUnit.MILLISECONDS);
-            if (event != null) {
-                throw event;
+            pending.add(future);
+        } finally {
+            lock.unlock();
+        }
+        completePending();
+        return future;
+    }
+
+    /**
+     * Retrieves the document of the given prompt.
+     * @param prompt the prompt, may be <code>null</code>
+     * @return the document, <code>null</code> if there is no prompt
+     */
+    private static SsmlDocument documentOf(final Prompt prompt) {
+        if (prompt == null) {
+            return null;
+        }
+        return prompt.getDocument();
+    }
+
+    /**
+     * Hands buffered messages to pending asynchronous reads. The futures are
+     * completed outside the lock so that dependent actions may read again.
+     */
+    private void completePending() {
+        while (true) {
+            final CompletableFuture<Prompt> future;
+            Prompt output = null;
+            JVoiceXMLEvent event = null;
+            lock.lock();
+            try {
+                while (!pending.isEmpty() && pending.peek().isDone()) {
+                    pending.poll();
+                }
+                if (pending.isEmpty() || messages.isEmpty()) {
+                    return;
+                }
+                future = pending.poll();
+                try {
+                    output = take();
+                } catch (JVoiceXMLEvent e) {
+                    event = e;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (event == null) {
+                future.complete(output);
+            } else {
+                future.completeExceptionally(event);
             }
-            if (!success || (output == null)) {
-                throw new TimeoutException("timeout of '" + timeout
-                        + "' msec exceeded while waiting for next message");
+        }
+    }
+
+    /**
+     * Removes the head of the buffer. Must be called with the lock held and
+     * a message available.
+     * @return the output at the head
+     * @throws JVoiceXMLEvent
+     *          the event at the head
+     */
+    private Prompt take() throws JVoiceXMLEvent {
+        final Message message = messages.poll();
+        if (message.event != null) {
+            if (OVERFLOW_EVENT.equals(message.event.getEventType())) {
+                overflowPending = false;
             }
-            return output;
+            throw message.event;
+        }
+        outputs--;
+        notFull.signal();
+        return message.output;
+    }
+
+    /**
+     * Adds an event to the buffer.
+     * @param event the event
+     */
+    private void addEvent(final JVoiceXMLEvent event) {
+        lock.lock();
+        try {
+            spuriousExpected = false;
+            messages.add(new Message(null, event));
+            notEmpty.signalAll();
         } finally {
-            output = null;
-            event = null;
-            readSem.release();
+            lock.unlock();
         }
+        completePending();
     }
 
     /**
@@ -102,13 +442,80 @@ public class OutputMessageBuffer implements TextListener {
      */
     @Override
     public void outputSsml(final SsmlDocument document) {
+        outputPrompt(Prompt.of(document));
+    }
+
+    /**
+     * Buffers an output that is already available as a prompt.
+     * @param prompt the output
+     */
+    public void outputPrompt(final Prompt prompt) {
+        final long received = System.nanoTime();
+        long responseTime = -1;
+        lock.lock();
         try {
-            readSem.acquire();
-            output = document;
+            if (isSpurious()) {
+                return;
+            }
+            if (inputSent != 0) {
+                responseTime = received - inputSent;
+                inputSent = 0;
+            }
+            while (outputs >= capacity) {
+                if (overflowPolicy == OverflowPolicy.BLOCK) {
+                    notFull.await();
+                } else if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                    dropOldestOutput();
+                } else {
+                    dropped++;
+                    if (!overflowPending) {
+                        overflowPending = true;
+                        messages.add(new Message(null, new GenericVoiceXmlEvent(
+                                OVERFLOW_EVENT, "output buffer of capacity "
+                                + capacity + " exceeded")));
+                        notEmpty.signalAll();
+                    }
+                    return;
+                }
+            }
+            messages.add(new Message(prompt, null));
+            outputs++;
+            notEmpty.signalAll();
         } catch (InterruptedException e) {
-            event = new GenericVoiceXmlEvent("interrupted", e.getMessage());
+            messages.add(new Message(null,
+                    new GenericVoiceXmlEvent("interrupted", e.getMessage())));
+            notEmpty.signalAll();
         } finally {
-            receiveSem.release();
+            lock.unlock();
+            recordResponseTime(responseTime);
+        }
+        completePending();
+    }
+
+    /**
+     * Records the time from an input to the output answering it.
+     * @param nanos the time in nsec, negative if the output answered no
+     *          input
+     */
+    private void recordResponseTime(final long nanos) {
+        final CallMetrics callMetrics = metrics;
+        if (callMetrics != null && nanos >= 0) {
+            callMetrics.recordInputToPrompt(nanos);
+        }
+    }
+
+    /**
+     * Discards the oldest buffered output. Must be called with the lock held.
+     */
+    private void dropOldestOutput() {
+        for (Iterator<Message> iterator = messages.iterator(); iterator.hasNext();) {
+            final Message message = iterator.next();
+            if (message.output != null) {
+                iterator.remove();
+                outputs--;
+                dropped++;
+                return;
+            }
         }
     }
 
@@ -131,7 +538,21 @@ public class OutputMessageBuffer implements TextListener {
      */
     @Override
     public void disconnected() {
-        event = new ConnectionDisconnectHangupEvent();
-        receiveSem.release();
+        addEvent(new ConnectionDisconnectHangupEvent());
+    }
+
+    /**
+     * An entry of the buffer, either an output or an event.
+     */
+    private static final class Message {
+        /** The output, <code>null</code> for events. */
+        private final Prompt output;
+        /** The event, <code>null</code> for outputs. */
+        private final JVoiceXMLEvent event;
+
+        Message(final Prompt output, final JVoiceXMLEvent event) {
+            this.output = output;
+            this.event = event;
+        }
     }
 }
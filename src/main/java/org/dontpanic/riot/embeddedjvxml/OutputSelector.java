@@ -0,0 +1,228 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.jvoicexml.xml.ssml.Speak;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Selects a fact from an output of JVoiceXML, see
+ * {@link EmbeddedServerTextCall#query(OutputSelector)}.
+ *
+ * Selectors are thread-safe and meant to be created once and reused. The
+ * text and audio sources are read from the {@link Prompt} without XPath.
+ * XPath selectors are compiled once per thread, as compiled expressions
+ * must not be shared by threads. Their expressions may use the prefix
+ * <code>ssml</code> for the SSML namespace. Selectors of user provided
+ * expressions are cached by expression.
+ *
+ * @param <T> type of the selected fact
+ */
+public abstract class OutputSelector<T> {
+    /** Default max. number of cached selectors of user provided expressions. */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    /** Namespaces of the expressions. */
+    private static final SimpleNamespaceContext NAMESPACES =
+            new SimpleNamespaceContext("ssml", Speak.DEFAULT_XMLNS);
+
+    /** XPath compiler of each thread. */
+    private static final ThreadLocal<XPath> XPATH = ThreadLocal.withInitial(() -> {
+        final XPath xpath = XPathFactory.newInstance().newXPath();
+        xpath.setNamespaceContext(NAMESPACES);
+        return xpath;
+    });
+
+    /** Selectors of user provided expressions by type and expression. */
+    private static final LruCache<String, OutputSelector<?>> CACHE =
+            new LruCache<String, OutputSelector<?>>(DEFAULT_CACHE_SIZE);
+
+    /** The text content of the output. */
+    public static final OutputSelector<String> TEXT = new OutputSelector<String>("text") {
+        @Override
+        public String select(final Prompt prompt) {
+            return prompt.getText();
+        }
+    };
+
+    /** The <code>src</code> of all audio elements. */
+    public static final OutputSelector<List<String>> AUDIO_SOURCES =
+            new OutputSelector<List<String>>("audio/@src") {
+                @Override
+                public List<String> select(final Prompt prompt) {
+                    return prompt.getAudioSources();
+                }
+            };
+
+    /** The <code>time</code> of all break elements. */
+    public static final OutputSelector<List<String>> BREAK_TIMES =
+            new XPathSelector<List<String>>("//ssml:break/@time", XPathConstants.NODESET);
+
+    /** The <code>strength</code> of all break elements. */
+    public static final OutputSelector<List<String>> BREAK_STRENGTHS =
+            new XPathSelector<List<String>>("//ssml:break/@strength", XPathConstants.NODESET);
+
+    /** The <code>rate</code> of all prosody elements. */
+    public static final OutputSelector<List<String>> PROSODY_RATES =
+            new XPathSelector<List<String>>("//ssml:prosody/@rate", XPathConstants.NODESET);
+
+    /** The <code>pitch</code> of all prosody elements. */
+    public static final OutputSelector<List<String>> PROSODY_PITCHES =
+            new XPathSelector<List<String>>("//ssml:prosody/@pitch", XPathConstants.NODESET);
+
+    /** The <code>volume</code> of all prosody elements. */
+    public static final OutputSelector<List<String>> PROSODY_VOLUMES =
+            new XPathSelector<List<String>>("//ssml:prosody/@volume", XPathConstants.NODESET);
+
+    /** Description of the selected fact. */
+    private final String description;
+
+    /**
+     * Constructs a new object.
+     * @param description description of the selected fact
+     */
+    protected OutputSelector(final String description) {
+        this.description = description;
+    }
+
+    /**
+     * Selects the fact from the given output.
+     * @param prompt the output
+     * @return the selected fact
+     */
+    public abstract T select(Prompt prompt);
+
+    /**
+     * Retrieves a selector of the string value of the given XPath
+     * expression.
+     * @param expression the XPath expression
+     * @return the selector
+     * @throws IllegalArgumentException
+     *          the expression is invalid
+     */
+    @SuppressWarnings("unchecked")
+    public static OutputSelector<String> string(final String expression) {
+        return (OutputSelector<String>) cached(expression, XPathConstants.STRING);
+    }
+
+    /**
+     * Retrieves a selector of the string values of all nodes selected by
+     * the given XPath expression.
+     * @param expression the XPath expression
+     * @return the selector
+     * @throws IllegalArgumentException
+     *          the expression is invalid
+     */
+    @SuppressWarnings("unchecked")
+    public static OutputSelector<List<String>> strings(final String expression) {
+        return (OutputSelector<List<String>>) cached(expression, XPathConstants.NODESET);
+    }
+
+    /**
+     * Retrieves the cached selector of the given expression, creating it
+     * if necessary.
+     * @param expression the XPath expression
+     * @param type the XPath result type
+     * @return the selector
+     */
+    private static OutputSelector<?> cached(final String expression, final QName type) {
+        final String key = type.getLocalPart() + ":" + expression;
+        final OutputSelector<?> cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final OutputSelector<?> selector = new XPathSelector<Object>(expression, type);
+        CACHE.put(key, selector);
+        return selector;
+    }
+
+    /**
+     * Retrieves the fraction of user provided expressions whose selector
+     * was taken from the cache.
+     * @return hit rate between 0 and 1
+     */
+    public static double getCacheHitRate() {
+        return CACHE.getHitRate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "OutputSelector[" + description + "]";
+    }
+
+    /**
+     * Selector evaluating an XPath expression on the document of the output.
+     * @param <T> type of the selected fact
+     */
+    private static final class XPathSelector<T> extends OutputSelector<T> {
+        /** The expression. */
+        private final String expression;
+        /** The XPath result type. */
+        private final QName type;
+        /** The compiled expression of each thread. */
+        private final ThreadLocal<XPathExpression> compiled;
+
+        /**
+         * Constructs a new object and checks the expression.
+         * @param expression the expression
+         * @param type {@link XPathConstants#STRING} or
+         *          {@link XPathConstants#NODESET}
+         * @throws IllegalArgumentException
+         *          the expression is invalid
+         */
+        XPathSelector(final String expression, final QName type) {
+            super(expression);
+            this.expression = expression;
+            this.type = type;
+            final XPathExpression first = compile();
+            compiled = ThreadLocal.withInitial(this::compile);
+            compiled.set(first);
+        }
+
+        /**
+         * Compiles the expression for the current thread.
+         * @return the compiled expression
+         */
+        private XPathExpression compile() {
+            try {
+                return XPATH.get().compile(expression);
+            } catch (XPathExpressionException e) {
+                throw new IllegalArgumentException("invalid XPath '" + expression + "'", e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T select(final Prompt prompt) {
+            final Object result;
+            try {
+                result = compiled.get().evaluate(prompt.getDocument().getDocument(), type);
+            } catch (XPathExpressionException e) {
+                throw new IllegalStateException("unable to evaluate '" + expression + "'", e);
+            }
+            if (type != XPathConstants.NODESET) {
+                return (T) result;
+            }
+            final NodeList nodes = (NodeList) result;
+            final List<String> values = new ArrayList<String>(nodes.getLength());
+            for (int i = 0; i < nodes.getLength(); i++) {
+                final Node node = nodes.item(i);
+                values.add(node.getTextContent());
+            }
+            return (T) Collections.unmodifiableList(values);
+        }
+    }
+}
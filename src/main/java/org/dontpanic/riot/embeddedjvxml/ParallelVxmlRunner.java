@@ -0,0 +1,74 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * JUnit runner that runs the test methods of a class concurrently on a
+ * pool of worker threads. Combined with a {@link VxmlCallRule}, every test
+ * gets its own session, text server and call on the JVoiceXML shared by
+ * all workers.
+ *
+ * The number of workers defaults to the number of processors and can be
+ * set with the system property {@value #WORKERS_PROPERTY}. The workers are
+ * virtual threads if enabled with {@value Threads#VIRTUAL_THREADS_PROPERTY}.
+ */
+public class ParallelVxmlRunner extends BlockJUnit4ClassRunner {
+    /** System property for the number of worker threads. */
+    public static final String WORKERS_PROPERTY = "embeddedjvxml.workers";
+
+    /**
+     * Constructs a new runner.
+     * @param klass the test class
+     * @throws InitializationError
+     *          error in the test class
+     */
+    public ParallelVxmlRunner(final Class<?> klass) throws InitializationError {
+        super(klass);
+        setScheduler(new ParallelScheduler(getWorkers()));
+    }
+
+    /**
+     * Retrieves the number of worker threads.
+     * @return number of worker threads
+     */
+    public static int getWorkers() {
+        return Integer.getInteger(WORKERS_PROPERTY,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs the test methods on a fixed pool of threads and waits for all of
+     * them to finish.
+     */
+    private static class ParallelScheduler implements RunnerScheduler {
+        /** The worker threads. */
+        private final ExecutorService executor;
+
+        ParallelScheduler(final int workers) {
+            executor = Executors.newFixedThreadPool(workers,
+                    Threads.newThreadFactory("ParallelVxmlRunner"));
+        }
+
+        @Override
+        public void schedule(final Runnable childStatement) {
+            executor.execute(childStatement);
+        }
+
+        @Override
+        public void finished() {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.StatusLine;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.apache.log4j.Logger;
+import org.jvoicexml.documentserver.SchemeStrategy;
+import org.jvoicexml.event.error.BadFetchError;
+import org.jvoicexml.interpreter.datamodel.KeyValuePair;
+import org.jvoicexml.xml.vxml.RequestMethod;
+
+/**
+ * Scheme strategy for <code>http:</code> URIs that keeps its connections
+ * alive in a pool shared by all sessions and revalidates documents it
+ * fetched before instead of downloading them again.
+ *
+ * Responses to <code>GET</code> requests carrying an <code>ETag</code> or
+ * <code>Last-Modified</code> header are kept in a local cache. The next
+ * request for the same URI sends them as <code>If-None-Match</code> and
+ * <code>If-Modified-Since</code>, and a <code>304 Not Modified</code>
+ * response is answered from the cache. <code>POST</code> requests are never
+ * cached. As the cache is shared by all sessions, responses marked
+ * <code>no-store</code> or <code>private</code> are not kept, and neither
+ * are responses that vary on request headers that differ between sessions,
+ * e.g. <code>Cookie</code>. The cache is bounded by the number of responses
+ * and by their total size.
+ *
+ * Each session has its own cookies, so the sessions of an application
+ * server are kept apart although they share the connections.
+ */
+public class PooledHttpSchemeStrategy implements SchemeStrategy {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(PooledHttpSchemeStrategy.class);
+
+    /** Default max. number of connections to a single host. */
+    public static final int DEFAULT_MAX_PER_HOST = 8;
+
+    /** Default max. number of connections to all hosts. */
+    public static final int DEFAULT_MAX_TOTAL = 64;
+
+    /** Default max. number of cached responses. */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    /** Default max. total size of the cached responses in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    /** Timeout for fetches that do not specify one in msec. */
+    private static final int DEFAULT_FETCH_TIMEOUT = 5000;
+
+    /**
+     * Request headers, in lower case, that are the same in the requests of
+     * all sessions. A response that varies on other headers is not cached.
+     */
+    private static final Set<String> SHARED_REQUEST_HEADERS = new HashSet<String>(Arrays.asList(
+            "accept", "accept-charset", "accept-encoding", "accept-language", "host",
+            "user-agent"));
+
+    /** The scheme served by this strategy. */
+    private final String scheme;
+    /** The pooled connections. */
+    private final PoolingHttpClientConnectionManager connectionManager;
+    /** The client sharing the connections. */
+    private final CloseableHttpClient client;
+    /** The cookies of the sessions by session id. */
+    private final Map<String, CookieStore> cookies;
+    /** The cached responses by URI. */
+    private final LruCache<URI, CachedResponse> responses;
+    /** Number of requests sent. */
+    private final LongAdder requests;
+    /** Number of requests answered with <code>304 Not Modified</code>. */
+    private final LongAdder notModified;
+    /** <code>true</code> once the client was closed. */
+    private volatile boolean closed;
+
+    /**
+     * Constructs a strategy for the <code>http</code> scheme with default
+     * limits.
+     */
+    public PooledHttpSchemeStrategy() {
+        this("http", DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructs a new object whose cached responses take at most
+     * {@value #DEFAULT_MAX_BYTES} bytes.
+     * @param scheme the scheme served by this strategy, e.g.
+     *          <code>https</code>
+     * @param maxEntries max. number of cached responses
+     */
+    public PooledHttpSchemeStrategy(final String scheme, final int maxEntries) {
+        this(scheme, maxEntries, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructs a new object.
+     * @param scheme the scheme served by this strategy, e.g.
+     *          <code>https</code>
+     * @param maxEntries max. number of cached responses
+     * @param maxBytes max. total size of the cached responses in bytes
+     */
+    public PooledHttpSchemeStrategy(final String scheme, final int maxEntries,
+                                    final long maxBytes) {
+        this.scheme = scheme;
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(DEFAULT_MAX_PER_HOST);
+        connectionManager.setMaxTotal(DEFAULT_MAX_TOTAL);
+        client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .build();
+        cookies = new ConcurrentHashMap<String, CookieStore>();
+        responses = new LruCache<URI, CachedResponse>(maxEntries, maxBytes,
+                response -> response.content.length);
+        requests = new LongAdder();
+        notModified = new LongAdder();
+    }
+
+    /**
+     * Sets the max. number of connections to a host without a limit of its
+     * own.
+     * @param max the max. number of connections
+     */
+    public void setMaxPerHost(final int max) {
+        connectionManager.setDefaultMaxPerRoute(max);
+    }
+
+    /**
+     * Sets the max. number of connections to the given host.
+     * @param host name of the host
+     * @param port port of the host, <code>-1</code> for the default port of
+     *          the scheme
+     * @param max the max. number of connections
+     */
+    public void setMaxPerHost(final String host, final int port, final int max) {
+        connectionManager.setMaxPerRoute(new HttpRoute(new HttpHost(host, port, scheme)), max);
+    }
+
+    /**
+     * Sets the max. number of connections to all hosts.
+     * @param max the max. number of connections
+     */
+    public void setMaxTotal(final int max) {
+        connectionManager.setMaxTotal(max);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getScheme() {
+        return scheme;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getInputStream(final String sessionId, final URI uri,
+                                      final RequestMethod method, final long timeout,
+                                      final Collection<KeyValuePair> parameters)
+            throws BadFetchError {
+        if (closed) {
+            throw new BadFetchError("scheme strategy was shut down: " + uri);
+        }
+        final boolean post = method == RequestMethod.POST;
+        final URI target;
+        final HttpRequestBase request;
+        try {
+            if (post) {
+                target = uri;
+                final HttpPost httpPost = new HttpPost(target);
+                httpPost.setEntity(new UrlEncodedFormEntity(toNameValuePairs(parameters)));
+                request = httpPost;
+            } else {
+                target = addParameters(uri, parameters);
+                request = new HttpGet(target);
+            }
+        } catch (URISyntaxException | IOException e) {
+            throw new BadFetchError(e.getMessage(), e);
+        }
+        final int fetchTimeout = timeout > 0
+                ? (int) Math.min(timeout, Integer.MAX_VALUE) : DEFAULT_FETCH_TIMEOUT;
+        request.setConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(fetchTimeout)
+                .setConnectTimeout(fetchTimeout)
+                .setSocketTimeout(fetchTimeout)
+                .build());
+        final CachedResponse cached = post ? null : responses.get(target);
+        if (cached != null) {
+            if (cached.etag != null) {
+                request.setHeader("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified != null) {
+                request.setHeader("If-Modified-Since", cached.lastModified);
+            }
+        }
+
+        final HttpClientContext context = HttpClientContext.create();
+        if (sessionId != null) {
+            context.setCookieStore(cookies.computeIfAbsent(sessionId, id -> new BasicCookieStore()));
+        }
+        requests.increment();
+        try (CloseableHttpResponse response = client.execute(request, context)) {
+            final StatusLine status = response.getStatusLine();
+            if (cached != null && status.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                notModified.increment();
+                EntityUtils.consume(response.getEntity());
+                LOGGER.debug("not modified: " + target);
+                return new ByteArrayInputStream(cached.content);
+            }
+            if (status.getStatusCode() != HttpStatus.SC_OK) {
+                EntityUtils.consume(response.getEntity());
+                throw new BadFetchError(status.getStatusCode() + " "
+                        + status.getReasonPhrase() + ": " + target);
+            }
+            final byte[] content = response.getEntity() == null
+                    ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+            if (!post) {
+                cache(target, response, content);
+            }
+            return new ByteArrayInputStream(content);
+        } catch (IOException e) {
+            throw new BadFetchError(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Keeps the given response if it has a validator and may be shared by
+     * all sessions, otherwise drops any older response for the same URI.
+     * @param uri the requested URI
+     * @param response the response
+     * @param content the body of the response
+     */
+    private void cache(final URI uri, final HttpResponse response, final byte[] content) {
+        final String etag = headerOf(response, "ETag");
+        final String lastModified = headerOf(response, "Last-Modified");
+        if (etag == null && lastModified == null || !isShared(response)) {
+            responses.remove(uri);
+            return;
+        }
+        responses.put(uri, new CachedResponse(etag, lastModified, content));
+    }
+
+    /**
+     * Checks if the given response may be kept in a cache shared by all
+     * sessions.
+     * @param response the response
+     * @return <code>true</code> if the response may be shared
+     */
+    private static boolean isShared(final HttpResponse response) {
+        for (Header header : response.getHeaders("Cache-Control")) {
+            for (String directive : header.getValue().split(",")) {
+                final String name = directive.split("=", 2)[0].trim().toLowerCase(Locale.ROOT);
+                if (name.equals("no-store") || name.equals("private")) {
+                    return false;
+                }
+            }
+        }
+        for (Header header : response.getHeaders("Vary")) {
+            for (String field : header.getValue().split(",")) {
+                final String name = field.trim().toLowerCase(Locale.ROOT);
+                if (!name.isEmpty() && !SHARED_REQUEST_HEADERS.contains(name)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the value of a response header.
+     * @param response the response
+     * @param name name of the header
+     * @return value of the header, <code>null</code> if there is none
+     */
+    private static String headerOf(final HttpResponse response, final String name) {
+        final Header header = response.getFirstHeader(name);
+        if (header == null) {
+            return null;
+        }
+        return header.getValue();
+    }
+
+    /**
+     * Adds the given parameters to the query of a URI.
+     * @param uri the URI
+     * @param parameters the parameters, may be <code>null</code>
+     * @return the URI with the parameters
+     * @throws URISyntaxException
+     *          the URI cannot be extended
+     */
+    private static URI addParameters(final URI uri, final Collection<KeyValuePair> parameters)
+            throws URISyntaxException {
+        if (parameters == null || parameters.isEmpty()) {
+            return uri;
+        }
+        final URIBuilder builder = new URIBuilder(uri);
+        builder.addParameters(toNameValuePairs(parameters));
+        return builder.build();
+    }
+
+    /**
+     * Converts the given parameters to request parameters.
+     * @param parameters the parameters, may be <code>null</code>
+     * @return the request parameters
+     */
+    private static List<NameValuePair> toNameValuePairs(final Collection<KeyValuePair> parameters) {
+        final List<NameValuePair> pairs = new ArrayList<NameValuePair>();
+        if (parameters == null) {
+            return pairs;
+        }
+        for (KeyValuePair parameter : parameters) {
+            final Object value = parameter.getValue();
+            pairs.add(new BasicNameValuePair(parameter.getKey(),
+                    value == null ? "" : value.toString()));
+        }
+        return pairs;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sessionClosed(final String sessionId) {
+        cookies.remove(sessionId);
+    }
+
+    /**
+     * Retrieves the number of requests sent.
+     * @return number of requests
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Retrieves the number of requests that were answered from the cache
+     * after the server confirmed that the document was not modified.
+     * @return number of revalidated responses
+     */
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    /**
+     * Retrieves the number of cached responses.
+     * @return number of cached responses
+     */
+    public int size() {
+        return responses.size();
+    }
+
+    /**
+     * Retrieves the total size of the cached responses.
+     * @return size in bytes
+     */
+    public long getCachedBytes() {
+        return responses.getWeight();
+    }
+
+    /**
+     * Closes the pooled connections that are not in use. The strategy
+     * opens new connections when it is used again.
+     */
+    public void closeIdleConnections() {
+        connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes the client and all pooled connections and drops the cached
+     * responses. The strategy cannot fetch documents any more.
+     */
+    public void shutdown() {
+        closed = true;
+        try {
+            client.close();
+        } catch (IOException e) {
+            LOGGER.warn("error closing the http client", e);
+        }
+        connectionManager.shutdown();
+        responses.clear();
+        cookies.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "PooledHttpSchemeStrategy[" + scheme + ", requests=" + getRequests()
+                + ", notModified=" + getNotModified() + ", cached=" + size()
+                + " (" + getCachedBytes() + " bytes)"
+                + ", " + connectionManager.getTotalStats() + "]";
+    }
+
+    /**
+     * A response that may be revalidated.
+     */
+    private static final class CachedResponse {
+        /** The <code>ETag</code> header, <code>null</code> if there is none. */
+        private final String etag;
+        /** The <code>Last-Modified</code> header, <code>null</code> if there is none. */
+        private final String lastModified;
+        /** The body of the response. */
+        private final byte[] content;
+
+        CachedResponse(final String etag, final String lastModified, final byte[] content) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.content = content;
+        }
+    }
+}
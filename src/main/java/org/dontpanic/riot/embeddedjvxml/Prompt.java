@@ -0,0 +1,163 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jvoicexml.xml.ssml.SsmlDocument;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An output of JVoiceXML reduced to what most assertions need: its text and
+ * the <code>src</code> of its audio elements.
+ *
+ * A prompt is backed by a received {@link SsmlDocument}. Its text and audio
+ * sources are extracted once on first use with a single walk of the raw
+ * DOM.
+ */
+public final class Prompt {
+    /** Name of the SSML audio element. */
+    private static final String AUDIO = "audio";
+    /** Name of the source attribute of the audio element. */
+    private static final String SRC = "src";
+
+    /** The document. */
+    private final SsmlDocument document;
+    /** Text content of the speak element, <code>null</code> until extracted. */
+    private volatile String text;
+    /** Audio sources in document order, <code>null</code> until extracted. */
+    private volatile List<String> audioSources;
+
+    /**
+     * Constructs a new object.
+     * @param document the document
+     */
+    private Prompt(final SsmlDocument document) {
+        this.document = document;
+    }
+
+    /**
+     * Creates a prompt of a received document.
+     * @param document the output
+     * @return the prompt, <code>null</code> if the document is
+     *          <code>null</code>
+     */
+    public static Prompt of(final SsmlDocument document) {
+        if (document == null) {
+            return null;
+        }
+        return new Prompt(document);
+    }
+
+    /**
+     * Retrieves the text content of the speak element, as
+     * <code>getSpeak().getTextContent()</code> of the document.
+     * @return the text, an empty string if there is none
+     */
+    public String getText() {
+        if (text == null) {
+            extract();
+        }
+        return text;
+    }
+
+    /**
+     * Retrieves the text with leading and trailing white space removed.
+     * @return the trimmed text
+     */
+    public String getTrimmedText() {
+        return getText().trim();
+    }
+
+    /**
+     * Retrieves the <code>src</code> of all audio elements in document
+     * order.
+     * @return the audio sources, an empty list if there are none
+     */
+    public List<String> getAudioSources() {
+        if (audioSources == null) {
+            extract();
+        }
+        return audioSources;
+    }
+
+    /**
+     * Retrieves the document of this prompt.
+     * @return the document
+     */
+    public SsmlDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * Extracts the text and audio sources of the document with a single
+     * walk of its raw DOM.
+     */
+    private void extract() {
+        final StringBuilder content = new StringBuilder();
+        final List<String> sources = new ArrayList<String>();
+        final Element speak = document.getDocument().getDocumentElement();
+        if (speak != null) {
+            Node node = speak.getFirstChild();
+            while (node != null) {
+                final short type = node.getNodeType();
+                if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+                    content.append(node.getNodeValue());
+                } else if (type == Node.ELEMENT_NODE
+                        && AUDIO.equals(localName(node))) {
+                    final String src = ((Element) node).getAttribute(SRC);
+                    if (!src.isEmpty()) {
+                        sources.add(src);
+                    }
+                }
+                node = next(node, speak);
+            }
+        }
+        audioSources = Collections.unmodifiableList(sources);
+        text = content.toString();
+    }
+
+    /**
+     * Retrieves the next node in document order below the given root.
+     * @param node the current node
+     * @param root the root of the walk
+     * @return the next node, <code>null</code> at the end of the walk
+     */
+    private static Node next(final Node node, final Node root) {
+        if (node.getFirstChild() != null) {
+            return node.getFirstChild();
+        }
+        Node current = node;
+        while (current != root) {
+            if (current.getNextSibling() != null) {
+                return current.getNextSibling();
+            }
+            current = current.getParentNode();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the local name of the given node, also if it was created
+     * without namespace support.
+     * @param node the node
+     * @return the local name
+     */
+    private static String localName(final Node node) {
+        final String name = node.getLocalName();
+        if (name != null) {
+            return name;
+        }
+        final String qualified = node.getNodeName();
+        return qualified.substring(qualified.indexOf(':') + 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return getText();
+    }
+}
@@ -0,0 +1,18 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.jvoicexml.voicexmlunit.CallListener;
+
+/**
+ * Call listener that hears the outputs of a call as {@link Prompt}s. The
+ * {@link CallListenerDispatcher} delivers an output to a prompt listener
+ * with {@link #heard(Prompt)} instead of
+ * {@link CallListener#heard(org.jvoicexml.xml.ssml.SsmlDocument)}, so it
+ * can use the text and audio sources the prompt already extracted.
+ */
+public interface PromptListener extends CallListener {
+    /**
+     * Notification about an output of the call.
+     * @param output the output
+     */
+    void heard(Prompt output);
+}
@@ -0,0 +1,198 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+
+/**
+ * Cache of compiled ECMAScript expressions and scripts shared by all
+ * sessions.
+ *
+ * Compiled Rhino scripts do not depend on the scope they are executed in,
+ * so the same script can be executed concurrently in the scopes of many
+ * sessions. Scripts are compiled with the configured Rhino optimization
+ * level: <code>-1</code> interprets, <code>0</code> to <code>9</code>
+ * compile to JVM bytecode, which takes longer once and runs faster on every
+ * further evaluation.
+ *
+ * Every evaluation of every session looks up its script here, so the
+ * lookup takes no lock. Instead of tracking the least recently used
+ * script, a full cache drops an arbitrary script to make room; the
+ * expressions of an application are usually far fewer than the max.
+ * number of entries.
+ */
+public class ScriptCache {
+    /** Default max. number of cached scripts. */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    /** Default Rhino optimization level. */
+    public static final int DEFAULT_OPTIMIZATION_LEVEL = 0;
+
+    /** The compiled scripts by source. */
+    private final ConcurrentMap<String, Script> scripts;
+    /** Max. number of cached scripts. */
+    private final int maxEntries;
+    /** Rhino optimization level to compile with. */
+    private final int optimizationLevel;
+    /** Number of evaluations that used a cached script. */
+    private final LongAdder hits;
+    /** Number of evaluations that had to compile their script. */
+    private final LongAdder misses;
+    /** Number of scripts dropped to make room. */
+    private final LongAdder evictions;
+    /** Number of evaluations the data model did not run from this cache. */
+    private final LongAdder bypasses;
+
+    /**
+     * Constructs a cache of the default size and optimization level.
+     */
+    public ScriptCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_OPTIMIZATION_LEVEL);
+    }
+
+    /**
+     * Constructs a new object.
+     * @param maxEntries max. number of cached scripts
+     * @param optimizationLevel Rhino optimization level from <code>-1</code>
+     *          to <code>9</code>
+     */
+    public ScriptCache(final int maxEntries, final int optimizationLevel) {
+        if (!Context.isValidOptimizationLevel(optimizationLevel)) {
+            throw new IllegalArgumentException("invalid optimization level: "
+                    + optimizationLevel);
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("max. entries must be positive: " + maxEntries);
+        }
+        scripts = new ConcurrentHashMap<String, Script>();
+        this.maxEntries = maxEntries;
+        this.optimizationLevel = optimizationLevel;
+        hits = new LongAdder();
+        misses = new LongAdder();
+        evictions = new LongAdder();
+        bypasses = new LongAdder();
+    }
+
+    /**
+     * Retrieves the compiled script for the given source, compiling it on
+     * first use.
+     * @param context the current Rhino context
+     * @param source the source of the script
+     * @return the compiled script
+     */
+    public Script getScript(final Context context, final String source) {
+        final Script cached = scripts.get(source);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        final int level = context.getOptimizationLevel();
+        context.setOptimizationLevel(optimizationLevel);
+        final Script script;
+        try {
+            script = context.compileString(source, "expr", 1, null);
+        } finally {
+            context.setOptimizationLevel(level);
+        }
+        makeRoom();
+        final Script other = scripts.putIfAbsent(source, script);
+        return other == null ? script : other;
+    }
+
+    /**
+     * Drops scripts until there is room for another one.
+     */
+    private void makeRoom() {
+        final Iterator<String> sources = scripts.keySet().iterator();
+        while (scripts.size() >= maxEntries && sources.hasNext()) {
+            sources.next();
+            sources.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Counts an evaluation that did not use this cache, as the data model
+     * could not run the script itself.
+     */
+    void bypassed() {
+        bypasses.increment();
+    }
+
+    /**
+     * Retrieves the Rhino optimization level scripts are compiled with.
+     * @return the optimization level
+     */
+    public int getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    /**
+     * Retrieves the number of evaluations that used a cached script.
+     * @return number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Retrieves the number of evaluations that had to compile their script.
+     * @return number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Retrieves the number of evaluations that were left to the original
+     * data model and compiled their source, e.g. as they ran in a foreign
+     * Rhino context.
+     * @return number of bypasses
+     */
+    public long getBypasses() {
+        return bypasses.sum();
+    }
+
+    /**
+     * Retrieves the fraction of evaluations that used a cached script.
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        final long hitCount = hits.sum();
+        final long lookups = hitCount + misses.sum() + bypasses.sum();
+        if (lookups == 0) {
+            return 0;
+        }
+        return (double) hitCount / lookups;
+    }
+
+    /**
+     * Retrieves the number of cached scripts.
+     * @return number of scripts
+     */
+    public int size() {
+        return scripts.size();
+    }
+
+    /**
+     * Removes all cached scripts.
+     */
+    public void clear() {
+        scripts.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "ScriptCache[size=" + size() + "/" + maxEntries + ", hits=" + getHits()
+                + ", misses=" + getMisses() + ", evictions=" + evictions.sum()
+                + ", bypasses=" + getBypasses() + ", optimization=" + optimizationLevel + "]";
+    }
+}
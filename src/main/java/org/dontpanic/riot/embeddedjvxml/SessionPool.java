@@ -0,0 +1,239 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.jvoicexml.client.text.TextListener;
+import org.jvoicexml.event.ErrorEvent;
+import org.jvoicexml.xml.ssml.SsmlDocument;
+
+/**
+ * Pool of calls whose sessions were created ahead of time, so that
+ * creating the session, connecting its transport and allocating its
+ * platform are no longer part of the call setup.
+ *
+ * A JVoiceXML session runs a single dialog and cannot be reset once it was
+ * called: its thread, data model and DTMF buffer end with the dialog.
+ * Pooled calls are therefore never reused. Every call handed out has a
+ * fresh session, and a replacement is created in the background. Before a
+ * call is handed out its health is checked; calls whose session reported
+ * an error or whose transport disconnected while waiting are discarded.
+ */
+public class SessionPool {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(SessionPool.class);
+
+    /** Default number of calls kept ready. */
+    public static final int DEFAULT_SIZE = 2;
+
+    /** The interpreter creating the calls. */
+    private final EmbeddedJVoiceXml engine;
+    /** Number of calls kept ready. */
+    private final int size;
+    /** Calls waiting to be handed out. */
+    private final BlockingQueue<PooledCall> ready;
+    /** Creates replacements for handed out and discarded calls. */
+    private final ExecutorService creator;
+    /** Number of calls handed out from the pool. */
+    private final AtomicLong hits;
+    /** Number of calls created on demand as none was ready. */
+    private final AtomicLong misses;
+    /** Number of calls that failed the health check. */
+    private final AtomicLong discarded;
+
+    /**
+     * Constructs a new pool.
+     * @param engine the started interpreter creating the calls
+     * @param size number of calls to keep ready
+     */
+    public SessionPool(final EmbeddedJVoiceXml engine, final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("pool size must be positive: " + size);
+        }
+        this.engine = engine;
+        this.size = size;
+        ready = new LinkedBlockingQueue<PooledCall>();
+        creator = Executors.newSingleThreadExecutor(Threads.newThreadFactory("SessionPool"));
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        discarded = new AtomicLong();
+    }
+
+    /**
+     * Creates the calls to keep ready in the background.
+     */
+    public void start() {
+        for (int i = 0; i < size; i++) {
+            replenish();
+        }
+    }
+
+    /**
+     * Retrieves a healthy call with a fresh session. If no call is ready,
+     * a new one is created on the calling thread.
+     * @return the call
+     * @throws ErrorEvent
+     *          error creating the session
+     * @throws InterruptedException
+     *          interrupted while waiting for a text platform or text server
+     */
+    public EmbeddedServerTextCall acquire() throws ErrorEvent, InterruptedException {
+        PooledCall pooled = ready.poll();
+        while (pooled != null) {
+            replenish();
+            if (pooled.isHealthy()) {
+                hits.incrementAndGet();
+                return pooled.call;
+            }
+            discard(pooled);
+            pooled = ready.poll();
+        }
+        misses.incrementAndGet();
+        return engine.createCall();
+    }
+
+    /**
+     * Ends all calls that are ready and stops creating new ones.
+     */
+    public void shutdown() {
+        creator.shutdownNow();
+        PooledCall pooled = ready.poll();
+        while (pooled != null) {
+            engine.endCall(pooled.call);
+            pooled = ready.poll();
+        }
+        LOGGER.info("session pool stopped");
+    }
+
+    /**
+     * Ends a call that failed the health check.
+     * @param pooled the call
+     */
+    private void discard(final PooledCall pooled) {
+        discarded.incrementAndGet();
+        LOGGER.warn("discarding unhealthy call, last error: " + pooled.call.getLastError());
+        engine.endCall(pooled.call);
+    }
+
+    /**
+     * Creates a replacement call in the background.
+     */
+    private void replenish() {
+        if (creator.isShutdown()) {
+            return;
+        }
+        creator.execute(() -> {
+            try {
+                ready.add(new PooledCall(engine.createCall()));
+            } catch (ErrorEvent e) {
+                LOGGER.error("unable to create a session", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Retrieves the number of calls kept ready.
+     * @return number of calls kept ready
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of calls currently ready.
+     * @return number of ready calls
+     */
+    public int getReady() {
+        return ready.size();
+    }
+
+    /**
+     * Retrieves the number of calls handed out from the pool.
+     * @return number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Retrieves the number of calls created on demand as none was ready.
+     * @return number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Retrieves the number of calls that failed the health check.
+     * @return number of discarded calls
+     */
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "SessionPool[ready=" + getReady() + "/" + size
+                + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", discarded=" + getDiscarded() + "]";
+    }
+
+    /**
+     * A call waiting in the pool that watches its transport for a
+     * disconnect.
+     */
+    private static final class PooledCall implements TextListener {
+        /** The call. */
+        private final EmbeddedServerTextCall call;
+        /** <code>true</code> once the transport disconnected. */
+        private volatile boolean disconnected;
+
+        PooledCall(final EmbeddedServerTextCall call) {
+            this.call = call;
+            call.addTextListener(this);
+        }
+
+        /**
+         * Checks if the call can be handed out.
+         * @return <code>true</code> if the session is usable
+         */
+        boolean isHealthy() {
+            return !disconnected && call.getSession() != null && call.getLastError() == null;
+        }
+
+        @Override
+        public void started() {
+        }
+
+        @Override
+        public void connected(final InetSocketAddress remote) {
+        }
+
+        @Override
+        public void outputSsml(final SsmlDocument document) {
+        }
+
+        @Override
+        public void expectingInput() {
+        }
+
+        @Override
+        public void inputClosed() {
+        }
+
+        @Override
+        public void disconnected() {
+            disconnected = true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * The ECMAScript standard objects, initialized once per JVM and shared
+ * read-only by the data models of all sessions.
+ *
+ * The shared scope is sealed, so no session can modify it. Each session
+ * gets a lightweight child scope that inherits the standard objects through
+ * its prototype and holds the variables of the session.
+ */
+public final class SharedRootScope {
+    /**
+     * Lazy holder of the shared scope.
+     */
+    private static final class Holder {
+        /** The sealed standard objects. */
+        private static final ScriptableObject INSTANCE = create();
+    }
+
+    private SharedRootScope() {
+    }
+
+    /**
+     * Retrieves the sealed standard objects, creating them on first use.
+     * @return the shared scope
+     */
+    public static ScriptableObject getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Creates a new root scope for a session.
+     * @return a new scope inheriting the shared standard objects
+     */
+    public static Scriptable newSessionScope() {
+        final ScriptableObject shared = getInstance();
+        final Scriptable scope = new NativeObject();
+        scope.setPrototype(shared);
+        scope.setParentScope(null);
+        return scope;
+    }
+
+    /**
+     * Initializes and seals the standard objects.
+     * @return the sealed standard objects
+     */
+    private static ScriptableObject create() {
+        final Context context = Context.enter();
+        try {
+            final ScriptableObject scope = context.initStandardObjects(null, true);
+            // Resolve the lazily loaded constructors before sealing
+            for (Object id : scope.getAllIds()) {
+                if (id instanceof String) {
+                    ScriptableObject.getProperty(scope, (String) id);
+                }
+            }
+            scope.sealObject();
+            return scope;
+        } finally {
+            Context.exit();
+        }
+    }
+}
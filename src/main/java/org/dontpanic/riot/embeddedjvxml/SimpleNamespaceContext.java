@@ -1,31 +1,97 @@
 package org.dontpanic.riot.embeddedjvxml;
 
+import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Namespace context of XPath expressions that maps any number of prefixes
+ * to namespace URIs. Prefixes may be added at any time; the context may be
+ * used by several threads.
+ */
 public class SimpleNamespaceContext implements NamespaceContext {
 
-    private String prefix;
-    private String namespaceURI;
+    /** Namespace URIs by prefix. */
+    private final Map<String, String> namespaces;
 
+    /**
+     * Constructs an empty context.
+     */
+    public SimpleNamespaceContext() {
+        namespaces = new ConcurrentHashMap<String, String>();
+    }
+
+    /**
+     * Constructs a context with a single prefix.
+     * @param prefix the prefix
+     * @param namespaceURI the namespace URI of the prefix
+     */
     public SimpleNamespaceContext(String prefix, String namespaceURI) {
-        this.prefix = prefix;
-        this.namespaceURI = namespaceURI;
+        this();
+        add(prefix, namespaceURI);
+    }
+
+    /**
+     * Maps the given prefix to the given namespace URI.
+     * @param prefix the prefix
+     * @param namespaceURI the namespace URI of the prefix
+     * @return this context
+     */
+    public SimpleNamespaceContext add(String prefix, String namespaceURI) {
+        if (prefix == null || namespaceURI == null) {
+            throw new IllegalArgumentException("prefix and namespace URI must not be null");
+        }
+        namespaces.put(prefix, namespaceURI);
+        return this;
     }
 
     @Override
     public String getNamespaceURI(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("prefix must not be null");
+        }
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            return XMLConstants.XML_NS_URI;
+        }
+        if (XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+            return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+        }
+        final String namespaceURI = namespaces.get(prefix);
+        if (namespaceURI == null) {
+            return XMLConstants.NULL_NS_URI;
+        }
         return namespaceURI;
     }
 
     @Override
     public String getPrefix(String namespaceURI) {
-        return prefix;
+        final Iterator<String> prefixes = getPrefixes(namespaceURI);
+        if (prefixes.hasNext()) {
+            return prefixes.next();
+        }
+        return null;
     }
 
     @Override
-    public Iterator getPrefixes(String namespaceURI) {
-        return Collections.singletonList(prefix).iterator();
+    public Iterator<String> getPrefixes(String namespaceURI) {
+        if (namespaceURI == null) {
+            throw new IllegalArgumentException("namespace URI must not be null");
+        }
+        final List<String> prefixes = new ArrayList<String>();
+        if (XMLConstants.XML_NS_URI.equals(namespaceURI)) {
+            prefixes.add(XMLConstants.XML_NS_PREFIX);
+        } else if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(namespaceURI)) {
+            prefixes.add(XMLConstants.XMLNS_ATTRIBUTE);
+        }
+        for (Map.Entry<String, String> entry : namespaces.entrySet()) {
+            if (entry.getValue().equals(namespaceURI)) {
+                prefixes.add(entry.getKey());
+            }
+        }
+        return prefixes.iterator();
     }
 }
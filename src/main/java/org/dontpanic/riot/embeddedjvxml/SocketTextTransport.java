@@ -0,0 +1,76 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.IOException;
+
+import org.jvoicexml.ConnectionInformation;
+import org.jvoicexml.client.text.TextListener;
+import org.jvoicexml.client.text.TextServer;
+
+/**
+ * Transport over the TCP socket of a {@link TextServer} as used by the text
+ * platform of JVoiceXML.
+ */
+public class SocketTextTransport implements TextTransport {
+    /** The text server. */
+    private final TextServer textServer;
+    /** The pool the text server was taken from, may be <code>null</code>. */
+    private final TextServerPool textServerPool;
+
+    /**
+     * Constructs a new object.
+     * @param textServer the started text server
+     * @param textServerPool the pool the text server was taken from,
+     *          <code>null</code> to stop the server on {@link #close()}
+     */
+    public SocketTextTransport(final TextServer textServer,
+                               final TextServerPool textServerPool) {
+        this.textServer = textServer;
+        this.textServerPool = textServerPool;
+    }
+
+    /**
+     * Retrieves the text server.
+     * @return the text server
+     */
+    public TextServer getTextServer() {
+        return textServer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionInformation getConnectionInformation() throws IOException {
+        return textServer.getConnectionInformation();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addTextListener(final TextListener listener) {
+        textServer.addTextListener(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sendInput(final String utterance) throws IOException {
+        textServer.sendInput(utterance);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The text server is returned to its pool or stopped.
+     */
+    @Override
+    public void close() {
+        if (textServerPool == null) {
+            textServer.stopServer();
+        } else {
+            textServerPool.release(textServer);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.util.Map;
+
+import org.jvoicexml.profile.TagStrategy;
+
+/**
+ * Service provider for additional tag strategies of the
+ * {@link TagStrategyRegistry}. Implementations are found with the
+ * {@link java.util.ServiceLoader} and must be listed in
+ * <code>META-INF/services/org.dontpanic.riot.embeddedjvxml.TagStrategyProvider</code>.
+ *
+ * A provided strategy replaces a built-in strategy for the same tag.
+ */
+public interface TagStrategyProvider {
+    /**
+     * Retrieves the provided strategies. The strategies are templates that
+     * are copied with {@link TagStrategy#newInstance()} for each node.
+     * @return provided strategies by tag name
+     */
+    Map<String, TagStrategy> getTagStrategies();
+}
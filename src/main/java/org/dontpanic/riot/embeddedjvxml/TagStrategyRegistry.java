@@ -0,0 +1,143 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.jvoicexml.profile.TagStrategy;
+
+/**
+ * Immutable registry of the tag strategy templates known to the
+ * {@link EmbeddedTagStrategyFactory}.
+ *
+ * The built-in VoiceXML 2.1 strategies are resolved by reflection once per
+ * JVM, on first use of {@link #getInstance()}. Further strategies are added
+ * by {@link TagStrategyProvider}s found with the {@link ServiceLoader}.
+ */
+public final class TagStrategyRegistry {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(TagStrategyRegistry.class);
+
+    /** Package of the built-in strategies. */
+    private static final String PACKAGE = "org.jvoicexml.profile.vxml21.tagstrategy.";
+
+    /** Tag names and classes of the built-in strategies. */
+    private static final String[][] BUILTIN_STRATEGIES = {
+        {"assign", "AssignStrategy"},
+        {"audio", "AudioTagStrategy"},
+        {"clear", "ClearStrategy"},
+        {"data", "DataStrategy"},
+        {"disconnect", "DisconnectStrategy"},
+        {"exit", "ExitStrategy"},
+        {"goto", "GotoStrategy"},
+        {"grammar", "GrammarStrategy"},
+        {"if", "IfStrategy"},
+        {"log", "LogStrategy"},
+        {"prompt", "PromptStrategy"},
+        {"reprompt", "RepromptStrategy"},
+        {"return", "ReturnStrategy"},
+        {"script", "ScriptStrategy"},
+        {"submit", "SubmitStrategy"},
+        {"#text", "TextStrategy"},
+        {"throw", "ThrowStrategy"},
+        {"value", "ValueStrategy"},
+        {"var", "VarStrategy"},
+    };
+
+    /**
+     * Lazy holder of the registry shared within this JVM.
+     */
+    private static final class Holder {
+        /** The shared registry. */
+        private static final TagStrategyRegistry INSTANCE = load();
+    }
+
+    /** The strategy templates by tag name. */
+    private final Map<String, TagStrategy> strategies;
+
+    /**
+     * Constructs a new object.
+     * @param strategies the strategy templates by tag name
+     */
+    private TagStrategyRegistry(final Map<String, TagStrategy> strategies) {
+        this.strategies = Collections.unmodifiableMap(strategies);
+    }
+
+    /**
+     * Retrieves the registry shared within this JVM, resolving the
+     * strategies on first use.
+     * @return the shared registry
+     */
+    public static TagStrategyRegistry getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Resolves the built-in and provided strategies into a new registry.
+     * Use {@link #getInstance()} instead, unless the cost of resolving is
+     * what you are after.
+     * @return a new registry
+     */
+    public static TagStrategyRegistry load() {
+        final Map<String, TagStrategy> strategies = new HashMap<String, TagStrategy>();
+        for (String[] builtin : BUILTIN_STRATEGIES) {
+            strategies.put(builtin[0], loadStrategy(PACKAGE + builtin[1]));
+        }
+        for (TagStrategyProvider provider : ServiceLoader.load(TagStrategyProvider.class)) {
+            LOGGER.debug("adding tag strategies of " + provider.getClass().getName());
+            strategies.putAll(provider.getTagStrategies());
+        }
+        return new TagStrategyRegistry(strategies);
+    }
+
+    /**
+     * Loads the specified tag strategy.
+     * @param name name of the class to load
+     * @return loaded tag strategy
+     */
+    private static TagStrategy loadStrategy(final String name) {
+        try {
+            final Class<?> clazz = Class.forName(name);
+            final Constructor<?> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return (TagStrategy) constructor.newInstance();
+        } catch (ReflectiveOperationException | SecurityException e) {
+            throw new IllegalStateException("unable to load tag strategy " + name, e);
+        }
+    }
+
+    /**
+     * Retrieves a strategy to execute a node with the given tag. The
+     * strategies keep the state of their node and are copied from the
+     * template for each node.
+     * @param tag name of the tag
+     * @return the strategy, <code>null</code> if the tag is not known
+     */
+    public TagStrategy getTagStrategy(final String tag) {
+        final TagStrategy strategy = strategies.get(tag);
+        if (strategy == null) {
+            return null;
+        }
+        return strategy.newInstance();
+    }
+
+    /**
+     * Retrieves the names of the known tags.
+     * @return names of the known tags
+     */
+    public Set<String> getTags() {
+        return strategies.keySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "TagStrategyRegistry" + getTags();
+    }
+}
@@ -0,0 +1,378 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.jvoicexml.ConnectionInformation;
+import org.jvoicexml.JVoiceXml;
+import org.jvoicexml.Session;
+import org.jvoicexml.client.text.TextListener;
+import org.jvoicexml.client.text.TextServer;
+import org.jvoicexml.event.ErrorEvent;
+import org.jvoicexml.event.error.NoresourceError;
+import org.jvoicexml.xml.ssml.SsmlDocument;
+
+/**
+ * Pool of text platforms shared by all sessions of one embedded JVoiceXML.
+ *
+ * JVoiceXML creates {@link #getSize()} text platforms on startup (see
+ * {@link EmbeddedTextConfiguration}) and fails a session immediately if none
+ * is free. This pool admits at most that many sessions at a time and lets
+ * further callers wait for a platform to be returned, up to the acquire
+ * timeout.
+ *
+ * JVoiceXML returns the platform of a session only after the session ended,
+ * which may be well after the transport reported the disconnect. The pool
+ * therefore returns a platform once {@link Session#waitSessionEnd()}
+ * returned, triggered by the disconnect or by
+ * {@link #releaseAfterEnd(Session)}, whichever comes first. Each platform is
+ * returned exactly once.
+ */
+public class TextPlatformPool {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(TextPlatformPool.class);
+
+    /** Default time to wait for a free platform in msec. */
+    public static final long DEFAULT_ACQUIRE_TIMEOUT = 10000;
+
+    /** What to do when all platforms are in use. */
+    public enum ExhaustedAction {
+        /** Wait up to the acquire timeout for a platform to be returned. */
+        WAIT,
+        /** Fail immediately. */
+        FAIL
+    }
+
+    /** Number of text platforms. */
+    private final int size;
+    /** Threads waiting for the end of sessions to return their platforms. */
+    private static final ExecutorService RELEASER =
+            Executors.newCachedThreadPool(Threads.newThreadFactory("TextPlatformRelease"));
+
+    /** Free platforms. */
+    private final Semaphore available;
+    /** The platforms in use by session id. */
+    private final Map<String, Lease> leased;
+    /** Time to wait for a free platform in msec, 0 waits forever. */
+    private volatile long acquireTimeout;
+    /** Behavior if all platforms are in use. */
+    private volatile ExhaustedAction exhaustedAction;
+
+    /** Peak number of platforms in use. */
+    private final AtomicInteger peakActive;
+    /** Number of successful acquisitions. */
+    private final AtomicLong acquired;
+    /** Number of acquisitions that failed as no platform was free. */
+    private final AtomicLong exhausted;
+    /** Accumulated time waiting for a platform in nsec. */
+    private final AtomicLong totalWaitNanos;
+    /** Longest time waiting for a platform in nsec. */
+    private final AtomicLong maxWaitNanos;
+
+    /**
+     * Constructs a pool with a single platform, i.e. one call at a time.
+     */
+    public TextPlatformPool() {
+        this(1);
+    }
+
+    /**
+     * Constructs a new pool.
+     * @param size number of text platforms, i.e. concurrent sessions
+     */
+    public TextPlatformPool(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("pool size must be positive: " + size);
+        }
+        this.size = size;
+        available = new Semaphore(size, true);
+        leased = new ConcurrentHashMap<String, Lease>();
+        acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT;
+        exhaustedAction = ExhaustedAction.WAIT;
+        peakActive = new AtomicInteger();
+        acquired = new AtomicLong();
+        exhausted = new AtomicLong();
+        totalWaitNanos = new AtomicLong();
+        maxWaitNanos = new AtomicLong();
+    }
+
+    /**
+     * Sets the time to wait for a free platform.
+     * @param timeout timeout in msec, waits forever if zero
+     */
+    public void setAcquireTimeout(final long timeout) {
+        acquireTimeout = timeout;
+    }
+
+    /**
+     * Sets the behavior if all platforms are in use.
+     * @param action the action
+     */
+    public void setExhaustedAction(final ExhaustedAction action) {
+        exhaustedAction = action;
+    }
+
+    /**
+     * Creates a new session on a free text platform.
+     * @param jvxml the interpreter
+     * @param textServer the started text server the session will connect to
+     * @return the new session
+     * @throws ErrorEvent
+     *          no platform available or error creating the session
+     * @throws InterruptedException
+     *          interrupted while waiting for a platform
+     */
+    public Session createSession(final JVoiceXml jvxml, final TextServer textServer)
+            throws ErrorEvent, InterruptedException {
+        return createSession(jvxml, new SocketTextTransport(textServer, null));
+    }
+
+    /**
+     * Creates a new session on a free text platform.
+     * @param jvxml the interpreter
+     * @param transport the transport the session will connect to
+     * @return the new session
+     * @throws ErrorEvent
+     *          no platform available or error creating the session
+     * @throws InterruptedException
+     *          interrupted while waiting for a platform
+     */
+    public Session createSession(final JVoiceXml jvxml, final TextTransport transport)
+            throws ErrorEvent, InterruptedException {
+        acquire();
+        final Session session;
+        try {
+            final ConnectionInformation info = transport.getConnectionInformation();
+            session = jvxml.createSession(info);
+        } catch (ErrorEvent | RuntimeException e) {
+            available.release();
+            throw e;
+        } catch (IOException e) {
+            available.release();
+            throw new NoresourceError("unable to determine connection information", e);
+        }
+        leased.put(session.getSessionID(), new Lease());
+        transport.addTextListener(new PlatformRelease(session));
+        return session;
+    }
+
+    /**
+     * Returns the platform of the given session to the pool immediately.
+     * Only meant for sessions that never ran, as those do not end. Subsequent
+     * calls for the same session have no effect.
+     * @param session the session
+     */
+    public void release(final Session session) {
+        final Lease lease = leased.remove(session.getSessionID());
+        if (lease != null) {
+            available.release();
+            lease.returned.complete(null);
+        }
+    }
+
+    /**
+     * Returns the platform of the given session to the pool as soon as the
+     * session ended. Subsequent calls for the same session only retrieve the
+     * pending return.
+     * @param session the session
+     * @return completes when the platform was returned
+     */
+    public CompletableFuture<Void> releaseAfterEnd(final Session session) {
+        final String id = session.getSessionID();
+        final Lease lease = leased.get(id);
+        if (lease == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (lease.ending.compareAndSet(false, true)) {
+            RELEASER.execute(() -> {
+                try {
+                    session.waitSessionEnd();
+                } catch (ErrorEvent | RuntimeException e) {
+                    LOGGER.warn("error waiting for the end of session " + id, e);
+                } finally {
+                    release(session);
+                    LOGGER.debug("released text platform of session " + id);
+                }
+            });
+        }
+        return lease.returned;
+    }
+
+    /**
+     * Waits for a free platform.
+     * @throws NoresourceError
+     *          no platform became available
+     * @throws InterruptedException
+     *          interrupted while waiting
+     */
+    private void acquire() throws NoresourceError, InterruptedException {
+        final long start = System.nanoTime();
+        final boolean success;
+        if (exhaustedAction == ExhaustedAction.FAIL) {
+            success = available.tryAcquire();
+        } else if (acquireTimeout == 0) {
+            available.acquire();
+            success = true;
+        } else {
+            success = available.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS);
+        }
+        final long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (!success) {
+            exhausted.incrementAndGet();
+            throw new NoresourceError("all " + size + " text platforms in use");
+        }
+        acquired.incrementAndGet();
+        peakActive.accumulateAndGet(getActive(), Math::max);
+    }
+
+    /**
+     * Retrieves the number of text platforms.
+     * @return number of platforms
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of platforms currently in use.
+     * @return number of platforms in use
+     */
+    public int getActive() {
+        return size - available.availablePermits();
+    }
+
+    /**
+     * Retrieves the largest number of platforms that were in use at once.
+     * @return peak number of platforms in use
+     */
+    public int getPeakActive() {
+        return peakActive.get();
+    }
+
+    /**
+     * Retrieves the number of callers currently waiting for a platform.
+     * @return number of waiting callers
+     */
+    public int getWaiting() {
+        return available.getQueueLength();
+    }
+
+    /**
+     * Retrieves the number of platforms handed out so far.
+     * @return number of successful acquisitions
+     */
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    /**
+     * Retrieves the number of requests that failed as no platform was free.
+     * @return number of failed acquisitions
+     */
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    /**
+     * Retrieves the accumulated time spent waiting for a platform.
+     * @return total waiting time in msec
+     */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    /**
+     * Retrieves the longest time spent waiting for a platform.
+     * @return maximum waiting time in msec
+     */
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    /**
+     * Retrieves the average time spent waiting for a platform.
+     * @return average waiting time in msec
+     */
+    public double getAverageWaitMillis() {
+        final long count = acquired.get() + exhausted.get();
+        if (count == 0) {
+            return 0;
+        }
+        return totalWaitNanos.get() / (count * 1000000.0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "TextPlatformPool[active=" + getActive() + "/" + size
+                + ", peak=" + getPeakActive()
+                + ", waiting=" + getWaiting()
+                + ", acquired=" + getAcquired()
+                + ", exhausted=" + getExhausted()
+                + ", avgWait=" + getAverageWaitMillis() + "ms"
+                + ", maxWait=" + getMaxWaitMillis() + "ms]";
+    }
+
+    /**
+     * A platform in use by a session.
+     */
+    private static final class Lease {
+        /** <code>true</code> once the platform waits for the session end. */
+        private final AtomicBoolean ending = new AtomicBoolean();
+        /** Completes when the platform was returned. */
+        private final CompletableFuture<Void> returned = new CompletableFuture<Void>();
+    }
+
+    /**
+     * Returns the platform of a session once the session disconnected from
+     * its transport and ended.
+     */
+    private class PlatformRelease implements TextListener {
+        /** The session holding the platform. */
+        private final Session session;
+
+        PlatformRelease(final Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public void started() {
+        }
+
+        @Override
+        public void connected(final InetSocketAddress remote) {
+        }
+
+        @Override
+        public void outputSsml(final SsmlDocument document) {
+        }
+
+        @Override
+        public void expectingInput() {
+        }
+
+        @Override
+        public void inputClosed() {
+        }
+
+        @Override
+        public void disconnected() {
+            releaseAfterEnd(session);
+        }
+    }
+}
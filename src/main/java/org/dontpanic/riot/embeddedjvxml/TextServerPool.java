@@ -0,0 +1,320 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.jvoicexml.client.text.TextListener;
+import org.jvoicexml.client.text.TextServer;
+import org.jvoicexml.xml.ssml.SsmlDocument;
+
+/**
+ * Pool of started {@link TextServer}s listening on ephemeral ports.
+ *
+ * A text server is attached to a single session and cannot be restarted
+ * once stopped. The pool therefore keeps a number of servers started and
+ * waiting for a connection. Checking out a server takes one of these and
+ * starts a replacement in the background, so the socket bind and thread
+ * startup are no longer part of the session setup. Returned servers are
+ * stopped; a server is never handed out twice, which also guarantees that
+ * no listener of a previous session is still attached.
+ */
+public class TextServerPool {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(TextServerPool.class);
+
+    /** Default number of servers kept ready. */
+    public static final int DEFAULT_SIZE = 2;
+
+    /** Max. number of ports tried to start a server. */
+    private static final int MAX_START_ATTEMPTS = 3;
+
+    /** Time to wait for a server to start in msec. */
+    private static final long START_TIMEOUT = 2000;
+
+    /** Number of servers kept ready. */
+    private final int size;
+    /** Started servers waiting for a session. */
+    private final BlockingQueue<TextServer> ready;
+    /** Starts replacements for checked out servers. */
+    private final ExecutorService starter;
+    /** Number of servers started. */
+    private final AtomicLong started;
+    /** Number of servers checked out. */
+    private final AtomicLong checkouts;
+    /** Number of checkouts that had to wait for a server to start. */
+    private final AtomicLong misses;
+
+    /**
+     * Constructs a pool with the default number of servers.
+     */
+    public TextServerPool() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Constructs a new pool.
+     * @param size number of servers to keep ready
+     */
+    public TextServerPool(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("pool size must be positive: " + size);
+        }
+        this.size = size;
+        ready = new LinkedBlockingQueue<TextServer>();
+        starter = Executors.newSingleThreadExecutor(Threads.newThreadFactory("TextServerPool"));
+        started = new AtomicLong();
+        checkouts = new AtomicLong();
+        misses = new AtomicLong();
+    }
+
+    /**
+     * Starts the servers to keep ready and waits until they accept
+     * connections.
+     * @throws IOException
+     *          error starting a server
+     * @throws InterruptedException
+     *          interrupted while waiting for a server to start
+     */
+    public void start() throws IOException, InterruptedException {
+        for (int i = 0; i < size; i++) {
+            ready.add(startServer());
+        }
+        LOGGER.info("started " + size + " text servers");
+    }
+
+    /**
+     * Checks out a started server, waiting for one to become ready if
+     * necessary.
+     * @return a started server waiting for a session
+     * @throws InterruptedException
+     *          interrupted while waiting
+     */
+    public TextServer acquire() throws InterruptedException {
+        replenish();
+        TextServer server = ready.poll();
+        if (server == null) {
+            misses.incrementAndGet();
+            server = ready.take();
+        }
+        checkouts.incrementAndGet();
+        return server;
+    }
+
+    /**
+     * Checks out a started server, waiting for one to become ready if
+     * necessary.
+     * @param timeout the timeout to wait at max in msec
+     * @return a started server waiting for a session
+     * @throws InterruptedException
+     *          interrupted while waiting
+     * @throws TimeoutException
+     *          no server was ready within the timeout
+     */
+    public TextServer acquire(final long timeout)
+            throws InterruptedException, TimeoutException {
+        replenish();
+        TextServer server = ready.poll();
+        if (server == null) {
+            misses.incrementAndGet();
+            server = ready.poll(timeout, TimeUnit.MILLISECONDS);
+            if (server == null) {
+                throw new TimeoutException("timeout of '" + timeout
+                        + "' msec exceeded while waiting for a text server");
+            }
+        }
+        checkouts.incrementAndGet();
+        return server;
+    }
+
+    /**
+     * Returns a server after its session ended. The server is stopped.
+     * @param server the server to return
+     */
+    public void release(final TextServer server) {
+        server.stopServer();
+    }
+
+    /**
+     * Stops all ready servers. Servers that are checked out must still be
+     * returned by their users.
+     */
+    public void shutdown() {
+        starter.shutdownNow();
+        TextServer server = ready.poll();
+        while (server != null) {
+            server.stopServer();
+            server = ready.poll();
+        }
+        LOGGER.info("text server pool stopped");
+    }
+
+    /**
+     * Starts a replacement server in the background.
+     */
+    private void replenish() {
+        if (starter.isShutdown()) {
+            return;
+        }
+        starter.execute(() -> {
+            try {
+                ready.add(startServer());
+            } catch (IOException e) {
+                LOGGER.error("unable to start a text server", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Starts a new server on a free ephemeral port. Another process may take
+     * the port before the server binds it, so the server is started again
+     * on another port if it does not report its start in time.
+     * @return the started server
+     * @throws IOException
+     *          no server could be started
+     * @throws InterruptedException
+     *          interrupted while waiting for the server to start
+     */
+    private TextServer startServer() throws IOException, InterruptedException {
+        for (int attempt = 0; attempt < MAX_START_ATTEMPTS; attempt++) {
+            final int port = findFreePort();
+            final TextServer server = new TextServer(port);
+            final ServerStarted serverStarted = new ServerStarted();
+            server.addTextListener(serverStarted);
+            server.start();
+            if (serverStarted.await(START_TIMEOUT)) {
+                started.incrementAndGet();
+                return server;
+            }
+            server.stopServer();
+            LOGGER.warn("text server did not start on port " + port);
+        }
+        throw new IOException("unable to start a text server in "
+                + MAX_START_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * Asks the operating system for a free port.
+     * @return a currently unused port
+     * @throws IOException
+     *          no free port
+     */
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Retrieves the number of servers kept ready.
+     * @return number of servers kept ready
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of servers currently waiting for a session.
+     * @return number of ready servers
+     */
+    public int getReady() {
+        return ready.size();
+    }
+
+    /**
+     * Retrieves the number of servers started so far.
+     * @return number of started servers
+     */
+    public long getStarted() {
+        return started.get();
+    }
+
+    /**
+     * Retrieves the number of servers checked out so far.
+     * @return number of checkouts
+     */
+    public long getCheckouts() {
+        return checkouts.get();
+    }
+
+    /**
+     * Retrieves the number of checkouts that found no ready server.
+     * @return number of checkouts that waited for a server to start
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Waits for a text server to report that it accepts connections.
+     */
+    private static final class ServerStarted implements TextListener {
+        /** Released once the server started. */
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        /**
+         * Waits for the start of the server.
+         * @param timeout the time to wait at max in msec
+         * @return <code>true</code> if the server started
+         * @throws InterruptedException
+         *          interrupted while waiting
+         */
+        boolean await(final long timeout) throws InterruptedException {
+            return latch.await(timeout, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void started() {
+            latch.countDown();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void connected(final InetSocketAddress remote) {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void outputSsml(final SsmlDocument document) {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void expectingInput() {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void inputClosed() {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void disconnected() {
+        }
+    }
+}
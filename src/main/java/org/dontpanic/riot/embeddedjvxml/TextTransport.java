@@ -0,0 +1,42 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.io.IOException;
+
+import org.jvoicexml.ConnectionInformation;
+import org.jvoicexml.client.text.TextListener;
+
+/**
+ * The channel an {@link EmbeddedServerTextCall} exchanges outputs and
+ * inputs with its session on. Outputs and input requests of JVoiceXML are
+ * reported to {@link TextListener}s, utterances are sent back with
+ * {@link #sendInput(String)}.
+ */
+public interface TextTransport {
+    /**
+     * Retrieves the information JVoiceXML needs to connect a new session
+     * to this transport.
+     * @return the connection information
+     * @throws IOException
+     *          the transport is not ready for a session
+     */
+    ConnectionInformation getConnectionInformation() throws IOException;
+
+    /**
+     * Adds the given listener of messages received from JVoiceXML.
+     * @param listener the listener to add
+     */
+    void addTextListener(TextListener listener);
+
+    /**
+     * Sends the given utterance to JVoiceXML.
+     * @param utterance the utterance
+     * @throws IOException
+     *          error sending the utterance
+     */
+    void sendInput(String utterance) throws IOException;
+
+    /**
+     * Closes this transport after the call ended.
+     */
+    void close();
+}
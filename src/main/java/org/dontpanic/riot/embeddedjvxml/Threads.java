@@ -0,0 +1,121 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Creates the threads that drive calls: test workers, load generator
+ * workers and listener delivery.
+ *
+ * On Java 21 and later these may be virtual threads, enabled with the
+ * system property {@value #VIRTUAL_THREADS_PROPERTY}. A call driven by a
+ * virtual thread blocks in the same call API, but only occupies a carrier
+ * thread while it runs, so many thousand concurrent calls need no more
+ * platform threads than processors. Virtual threads are created by
+ * reflection, so this class also runs on Java 8, where it always creates
+ * daemon platform threads.
+ */
+public final class Threads {
+    /** Logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(Threads.class);
+
+    /** System property to drive calls on virtual threads. */
+    public static final String VIRTUAL_THREADS_PROPERTY = "embeddedjvxml.virtualThreads";
+
+    /** <code>Thread.ofVirtual()</code>, <code>null</code> before Java 21. */
+    private static final Method OF_VIRTUAL;
+    /** <code>Thread.Builder.name(String, long)</code>. */
+    private static final Method NAME;
+    /** <code>Thread.Builder.factory()</code>. */
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            LOGGER.debug("virtual threads not available");
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private Threads() {
+    }
+
+    /**
+     * Checks if this JVM supports virtual threads.
+     * @return <code>true</code> on Java 21 and later
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Checks if calls are driven on virtual threads, i.e. if they are
+     * available and enabled with {@value #VIRTUAL_THREADS_PROPERTY}.
+     * @return <code>true</code> if virtual threads are used
+     */
+    public static boolean isVirtualThreadsEnabled() {
+        return isVirtualThreadsAvailable() && Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY);
+    }
+
+    /**
+     * Creates a factory of threads named <code>name-N</code>, virtual if
+     * {@link #isVirtualThreadsEnabled()}.
+     * @param name prefix of the thread names
+     * @return the thread factory
+     */
+    public static ThreadFactory newThreadFactory(final String name) {
+        return newThreadFactory(name, isVirtualThreadsEnabled());
+    }
+
+    /**
+     * Creates a factory of threads named <code>name-N</code>.
+     * @param name prefix of the thread names
+     * @param virtual <code>true</code> for virtual threads
+     * @return the thread factory
+     * @throws UnsupportedOperationException
+     *          virtual threads are requested but not available
+     */
+    public static ThreadFactory newThreadFactory(final String name, final boolean virtual) {
+        if (virtual) {
+            return newVirtualThreadFactory(name);
+        }
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Creates a factory of virtual threads.
+     * @param name prefix of the thread names
+     * @return the thread factory
+     * @throws UnsupportedOperationException
+     *          virtual threads are not available
+     */
+    private static ThreadFactory newVirtualThreadFactory(final String name) {
+        if (!isVirtualThreadsAvailable()) {
+            throw new UnsupportedOperationException("virtual threads require Java 21");
+        }
+        try {
+            final Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name + "-", 1L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("unable to create virtual threads", e);
+        }
+    }
+}
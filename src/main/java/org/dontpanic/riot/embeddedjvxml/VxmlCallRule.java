@@ -0,0 +1,60 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.rules.ExternalResource;
+
+/**
+ * JUnit rule that provides every test with a call of its own on the
+ * shared {@link EmbeddedJVoiceXml}. The call is hung up after the test and
+ * its text platform is available again before the next test starts.
+ */
+public class VxmlCallRule extends ExternalResource {
+    /** The interpreter, <code>null</code> for the shared instance. */
+    private final EmbeddedJVoiceXml engine;
+    /** The interpreter the current call runs on. */
+    private EmbeddedJVoiceXml activeEngine;
+    /** The call of the current test. */
+    private EmbeddedServerTextCall call;
+
+    /**
+     * Constructs a rule for calls on the shared interpreter.
+     */
+    public VxmlCallRule() {
+        this(null);
+    }
+
+    /**
+     * Constructs a rule for calls on the given interpreter.
+     * @param engine the started interpreter
+     */
+    public VxmlCallRule(final EmbeddedJVoiceXml engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void before() throws Throwable {
+        activeEngine = engine == null ? EmbeddedJVoiceXml.getShared() : engine;
+        call = activeEngine.newCall();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void after() {
+        if (call != null) {
+            activeEngine.endCall(call);
+            call = null;
+        }
+    }
+
+    /**
+     * Retrieves the call of the current test.
+     * @return the call
+     */
+    public EmbeddedServerTextCall getCall() {
+        return call;
+    }
+}
@@ -0,0 +1,73 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Test;
+import org.jvoicexml.event.plain.ConnectionDisconnectHangupEvent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.fail;
+
+public class AsyncInputMonitorTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testRequestIsConsumedOnce() throws Exception {
+        final AsyncInputMonitor monitor = new AsyncInputMonitor();
+        monitor.expectingInput();
+
+        assertThat(monitor.whenExpectingInput().isDone(), equalTo(true));
+        assertThat(monitor.whenExpectingInput().isDone(), equalTo(false));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testEachRequestCompletesOneFuture() throws Exception {
+        final AsyncInputMonitor monitor = new AsyncInputMonitor();
+        final CompletableFuture<Void> first = monitor.whenExpectingInput();
+        final CompletableFuture<Void> second = monitor.whenExpectingInput();
+
+        monitor.expectingInput();
+
+        assertThat(first.isDone(), equalTo(true));
+        assertThat(second.isDone(), equalTo(false));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testCancelledFutureDoesNotConsumeRequest() throws Exception {
+        final AsyncInputMonitor monitor = new AsyncInputMonitor();
+        monitor.whenExpectingInput().cancel(false);
+
+        monitor.expectingInput();
+
+        assertThat(monitor.whenExpectingInput().isDone(), equalTo(true));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testClosedInputIsNotExpectedAnyMore() throws Exception {
+        final AsyncInputMonitor monitor = new AsyncInputMonitor();
+        monitor.expectingInput();
+        monitor.inputClosed();
+
+        assertThat(monitor.whenExpectingInput().isDone(), equalTo(false));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testDisconnectFailsWaitingFutures() throws Exception {
+        final AsyncInputMonitor monitor = new AsyncInputMonitor();
+        final CompletableFuture<Void> waiting = monitor.whenExpectingInput();
+
+        monitor.disconnected();
+
+        try {
+            waiting.get();
+            fail("hangup expected");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(ConnectionDisconnectHangupEvent.class));
+        }
+        assertThat(monitor.whenExpectingInput().isCompletedExceptionally(), equalTo(true));
+    }
+}
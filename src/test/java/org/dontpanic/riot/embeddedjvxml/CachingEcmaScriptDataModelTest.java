@@ -0,0 +1,149 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvoicexml.event.error.SemanticError;
+import org.jvoicexml.interpreter.datamodel.DataModel;
+import org.jvoicexml.interpreter.datamodel.ecmascript.EcmaScriptDataModel;
+import org.mozilla.javascript.Context;
+
+import java.util.Collection;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+public class CachingEcmaScriptDataModelTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    private static final String[] EXPRESSIONS = {
+        "1 + 2",
+        "7 / 2",
+        "'a' + 'b'",
+        "'abc'.length",
+        "Math.max(1, 2)",
+        "[1, 2, 3].length",
+        "1 < 2",
+        "null",
+        "undefined",
+        "var counter = 1",
+        "counter = counter + 1",
+        "counter",
+        "typeof counter",
+    };
+
+    private ScriptCache scriptCache;
+    private DataModel cached;
+    private DataModel uncached;
+
+    @Before
+    public void createModels() throws Exception {
+        scriptCache = new ScriptCache();
+        cached = new CachingEcmaScriptDataModel(scriptCache).newInstance();
+        cached.createScope();
+        uncached = new EcmaScriptDataModel();
+        uncached.createScope();
+    }
+
+    @After
+    public void exitContext() {
+        while (Context.getCurrentContext() != null) {
+            Context.exit();
+        }
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testDataModelIsSupported() throws Exception {
+        assertThat(CachingEcmaScriptDataModel.isSupported(), equalTo(true));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testResultsMatchUncachedModel() throws Exception {
+        for (String expression : EXPRESSIONS) {
+            assertThat(expression, cached.evaluateExpression(expression, Object.class),
+                    equalTo(uncached.evaluateExpression(expression, Object.class)));
+        }
+        assertThat(scriptCache.getMisses(), equalTo((long) EXPRESSIONS.length));
+        assertThat(scriptCache.getBypasses(), equalTo(0L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testConvertedResultsMatchUncachedModel() throws Exception {
+        assertThat(cached.evaluateExpression("'a' + 1", String.class),
+                equalTo(uncached.evaluateExpression("'a' + 1", String.class)));
+        assertThat(cached.evaluateExpression("1 < 2", Boolean.class),
+                equalTo(uncached.evaluateExpression("1 < 2", Boolean.class)));
+        assertThat(cached.evaluateExpression("'4' * 2", Double.class),
+                equalTo(uncached.evaluateExpression("'4' * 2", Double.class)));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testConcatenatedStringIsJavaString() throws Exception {
+        final String expression = "var s = 'a'; for (var i = 0; i < 10; i++) { s = s + i; } s";
+
+        assertThat(cached.evaluateExpression(expression, Object.class), instanceOf(String.class));
+        assertThat(cached.evaluateExpression(expression, Object.class),
+                equalTo(uncached.evaluateExpression(expression, Object.class)));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testRepeatedEvaluationUsesCachedScript() throws Exception {
+        cached.evaluateExpression("1 + 2", Object.class);
+        cached.evaluateExpression("1 + 2", Object.class);
+
+        assertThat(scriptCache.getMisses(), equalTo(1L));
+        assertThat(scriptCache.getHits(), equalTo(1L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testConfigurationUsesOriginalModelByDefault() throws Exception {
+        final EmbeddedTextConfiguration configuration = new EmbeddedTextConfiguration();
+
+        assertThat(configuration.getScriptCache(), nullValue());
+        assertThat(configuration.isSharedRootScope(), equalTo(false));
+        assertThat(dataModelOf(configuration), not(instanceOf(CachingEcmaScriptDataModel.class)));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testConfiguredScriptCacheIsUsed() throws Exception {
+        final EmbeddedTextConfiguration configuration = new EmbeddedTextConfiguration();
+        configuration.setScriptCache(scriptCache);
+        final DataModel model = dataModelOf(configuration).newInstance();
+        model.createScope();
+
+        assertThat(model, instanceOf(CachingEcmaScriptDataModel.class));
+        assertThat(model.evaluateExpression("1 + 2", Object.class),
+                equalTo(uncached.evaluateExpression("1 + 2", Object.class)));
+        assertThat(model.evaluateExpression("1 + 2", Object.class),
+                equalTo(uncached.evaluateExpression("1 + 2", Object.class)));
+        // Evaluated from the cache, not handed back to the original model
+        assertThat(scriptCache.getMisses(), equalTo(1L));
+        assertThat(scriptCache.getHits(), equalTo(1L));
+        assertThat(scriptCache.getBypasses(), equalTo(0L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = SemanticError.class)
+    public void testUndefinedVariable() throws Exception {
+        cached.evaluateExpression("unknown + 1", Object.class);
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = SemanticError.class)
+    public void testSyntaxError() throws Exception {
+        cached.evaluateExpression("1 +", Object.class);
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = SemanticError.class)
+    public void testThrownValue() throws Exception {
+        cached.evaluateExpression("throw 'failed'", Object.class);
+    }
+
+    private static DataModel dataModelOf(final EmbeddedTextConfiguration configuration) {
+        final Collection<DataModel> models = configuration.loadObjects(DataModel.class, null);
+        assertThat(models.size(), equalTo(1));
+        return models.iterator().next();
+    }
+}
@@ -0,0 +1,164 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Test;
+import org.jvoicexml.voicexmlunit.CallListener;
+import org.jvoicexml.xml.ssml.SsmlDocument;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+public class CallListenerDispatcherTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testFailingListenerIsIsolated() throws Exception {
+        final CallListenerDispatcher dispatcher = new CallListenerDispatcher();
+        final RecordingListener failing = new RecordingListener() {
+            @Override
+            public void said(final String utterance) {
+                throw new IllegalStateException("failing listener");
+            }
+        };
+        final RecordingListener recording = new RecordingListener();
+        dispatcher.addListener(failing);
+        dispatcher.addListener(recording);
+
+        dispatcher.said("yes");
+
+        assertThat(recording.events, contains("said yes"));
+        assertThat(dispatcher.getFailed(), equalTo(1L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testAsynchronousDeliveryInOrder() throws Exception {
+        final CallListenerDispatcher dispatcher = new CallListenerDispatcher();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingListener slow = new RecordingListener() {
+            @Override
+            public void entered(final String digits) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.entered(digits);
+            }
+        };
+        dispatcher.setAsynchronous(true);
+        dispatcher.addListener(slow);
+
+        // Delivered synchronously, the first event would block this thread
+        // until the release that follows it
+        dispatcher.entered("1");
+        dispatcher.said("yes");
+        dispatcher.hungup();
+        blocked.await();
+        assertThat(slow.events.isEmpty(), equalTo(true));
+        release.countDown();
+
+        assertThat(dispatcher.awaitDelivery(TEST_TIMEOUT_MS), equalTo(true));
+        assertThat(slow.events, contains("entered 1", "said yes", "hungup"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testOverflowDropsOldest() throws Exception {
+        final CallListenerDispatcher dispatcher = new CallListenerDispatcher();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingListener slow = new RecordingListener() {
+            @Override
+            public void entered(final String digits) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.entered(digits);
+            }
+        };
+        dispatcher.setAsynchronous(true);
+        dispatcher.setCapacity(1);
+        dispatcher.addListener(slow);
+
+        dispatcher.entered("1");
+        blocked.await();
+        dispatcher.said("dropped");
+        dispatcher.said("kept");
+        release.countDown();
+
+        assertThat(dispatcher.awaitDelivery(TEST_TIMEOUT_MS), equalTo(true));
+        assertThat(dispatcher.getDropped(), equalTo(1L));
+        assertThat(slow.events, contains("entered 1", "said kept"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testPromptListenerHearsPrompt() throws Exception {
+        final CallListenerDispatcher dispatcher = new CallListenerDispatcher();
+        final RecordingPromptListener promptListener = new RecordingPromptListener();
+        final RecordingListener recording = new RecordingListener();
+        dispatcher.addListener(promptListener);
+        dispatcher.addListener(recording);
+        final SsmlDocument document = new SsmlDocument();
+        final Prompt prompt = Prompt.of(document);
+
+        dispatcher.heard(prompt);
+
+        assertThat(promptListener.prompts, contains(prompt));
+        assertThat(promptListener.events.isEmpty(), equalTo(true));
+        assertThat(recording.events, contains("heard " + document));
+    }
+
+    private static class RecordingPromptListener extends RecordingListener
+            implements PromptListener {
+        final List<Prompt> prompts = new CopyOnWriteArrayList<Prompt>();
+
+        @Override
+        public void heard(final Prompt output) {
+            prompts.add(output);
+        }
+    }
+
+    private static class RecordingListener implements CallListener {
+        final List<String> events = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public void called(final URI uri) {
+            events.add("called " + uri);
+        }
+
+        @Override
+        public void heard(final SsmlDocument output) {
+            events.add("heard " + output);
+        }
+
+        @Override
+        public void said(final String utterance) {
+            events.add("said " + utterance);
+        }
+
+        @Override
+        public void entered(final String digits) {
+            events.add("entered " + digits);
+        }
+
+        @Override
+        public void error(final AssertionError error) {
+            events.add("error " + error.getMessage());
+        }
+
+        @Override
+        public void hungup() {
+            events.add("hungup");
+        }
+    }
+}
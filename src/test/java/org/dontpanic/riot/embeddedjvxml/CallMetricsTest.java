@@ -0,0 +1,82 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Test;
+import org.jvoicexml.event.plain.ConnectionDisconnectHangupEvent;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+
+public class CallMetricsTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testSummaryOfHistogram() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10; value++) {
+            histogram.record(value);
+        }
+
+        final LatencySummary summary = LatencySummary.of(histogram);
+
+        assertThat(summary.getCount(), equalTo(10L));
+        assertThat(summary.getMean(), closeTo(5.5, 0.001));
+        assertThat(summary.getP50(), equalTo(5L));
+        assertThat(summary.getP90(), equalTo(9L));
+        assertThat(summary.getP99(), equalTo(10L));
+        assertThat(summary.getMax(), equalTo(10L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testCallFigures() throws Exception {
+        final CallMetrics metrics = new CallMetrics();
+        metrics.callStarted();
+        metrics.callStarted();
+        metrics.callHungup();
+        metrics.recordInputToPrompt(3000000);
+        metrics.recordError(new AssertionError(new ConnectionDisconnectHangupEvent()));
+
+        assertThat(metrics.getCalls(), equalTo(2L));
+        assertThat(metrics.getActiveCalls(), equalTo(1L));
+        assertThat(metrics.getInputToPrompt().getMax(), equalTo(3000L));
+        assertThat(metrics.getErrors(),
+                hasEntry(new ConnectionDisconnectHangupEvent().getEventType(), 1L));
+
+        metrics.reset();
+        assertThat(metrics.getCalls(), equalTo(0L));
+        assertThat(metrics.getInputToPrompt().getCount(), equalTo(0L));
+        assertThat(metrics.getErrors().isEmpty(), equalTo(true));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testFiguresAreExportedViaJmx() throws Exception {
+        final CallMetrics metrics = new CallMetrics();
+        metrics.callStarted();
+        metrics.recordInputToPrompt(2000000);
+        metrics.recordInputToPrompt(4000000);
+        metrics.register("CallMetricsTest");
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(CallMetrics.DOMAIN
+                    + ":type=CallMetrics,name=" + ObjectName.quote("CallMetricsTest"));
+
+            assertThat(server.getAttribute(name, "Calls"), equalTo((Object) 1L));
+            final CompositeData inputToPrompt =
+                    (CompositeData) server.getAttribute(name, "InputToPrompt");
+            assertThat(inputToPrompt.get("count"), equalTo((Object) 2L));
+            assertThat(inputToPrompt.get("max"), equalTo((Object) 4000L));
+
+            server.invoke(name, "reset", null, null);
+            assertThat(server.getAttribute(name, "Calls"), equalTo((Object) 0L));
+        } finally {
+            metrics.unregister();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvoicexml.voicexmlunit.Call;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.fail;
+
+public class DialogScriptTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testLoad() throws Exception {
+        final File file = script("# comment", "", "call input.vxml",
+                "hears Do you like this example?", "say yes", "enter 1#");
+
+        final DialogScript script = DialogScript.load(file);
+
+        assertThat(script.getName(), equalTo(file.getName()));
+        final List<DialogScript.Step> steps = script.getSteps();
+        assertThat(steps.size(), equalTo(4));
+        assertThat(steps.get(0).getAction(), equalTo(DialogScript.Action.CALL));
+        assertThat(steps.get(0).getArgument(),
+                equalTo(new File(folder.getRoot(), "input.vxml").toURI().toString()));
+        assertThat(steps.get(1).getArgument(), equalTo("Do you like this example?"));
+        assertThat(steps.get(3).toString(), equalTo("enter 1#"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testUnknownStep() throws Exception {
+        final File file = script("call input.vxml", "shout yes");
+        try {
+            DialogScript.load(file);
+            fail("syntax error expected");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString(":2: unknown step 'shout'"));
+        }
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testRun() throws Exception {
+        final DialogScript script = DialogScript.load(script("call input.vxml",
+                "hears Do you like this example?", "say yes", "enter 1",
+                "hears You like this example."));
+        final List<String> invocations = new ArrayList<>();
+        final Call call = (Call) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Call.class}, (proxy, method, args) -> {
+                    invocations.add(method.getName() + " " + args[0]);
+                    return null;
+                });
+        final LoadStatistics statistics = new LoadStatistics();
+
+        script.run(call, 100, statistics);
+
+        assertThat(invocations, contains(
+                "call " + new File(folder.getRoot(), "input.vxml").toURI(),
+                "hears Do you like this example?",
+                "say yes",
+                "enter 1",
+                "hears You like this example."));
+        assertThat(statistics.getPrompts().getCount(), equalTo(2L));
+        assertThat(statistics.getInputs().getCount(), equalTo(2L));
+    }
+
+    private File script(final String... lines) throws IOException {
+        final File file = folder.newFile("test.dialog");
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -0,0 +1,110 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvoicexml.xml.vxml.VoiceXmlDocument;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class DocumentCacheTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testCachedDocumentIsCopied() throws Exception {
+        final File file = writeDocument("first");
+        final DocumentCache cache = new DocumentCache(4);
+        final AtomicInteger loads = new AtomicInteger();
+        final VoiceXmlDocument loaded = new VoiceXmlDocument();
+
+        final VoiceXmlDocument first = cache.getDocument(file.toURI(), () -> {
+            loads.incrementAndGet();
+            return loaded;
+        });
+        final VoiceXmlDocument second = cache.getDocument(file.toURI(), () -> {
+            loads.incrementAndGet();
+            return loaded;
+        });
+
+        assertThat(first, sameInstance(loaded));
+        assertThat(second, not(sameInstance(loaded)));
+        assertThat(loads.get(), equalTo(1));
+        assertThat(cache.getHits(), equalTo(1L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testChangedDocumentIsReloaded() throws Exception {
+        final File file = writeDocument("first");
+        final URI uri = file.toURI();
+        final DocumentCache cache = new DocumentCache(4);
+        final AtomicInteger loads = new AtomicInteger();
+        final VoiceXmlDocument loaded = new VoiceXmlDocument();
+        final DocumentCache.Loader<VoiceXmlDocument> loader = () -> {
+            loads.incrementAndGet();
+            return loaded;
+        };
+
+        cache.getDocument(uri, loader);
+        Files.write(file.toPath(), "changed content".getBytes(StandardCharsets.UTF_8));
+        cache.getDocument(uri, loader);
+
+        assertThat(loads.get(), equalTo(2));
+        assertThat(cache.getInvalidations(), equalTo(1L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testHttpDocumentIsCachedWhileFresh() throws Exception {
+        final URI uri = new URI("http://localhost:1/test.vxml");
+        final DocumentCache cache = new DocumentCache(4);
+        cache.setHttpFreshness(50);
+        final AtomicInteger loads = new AtomicInteger();
+        final DocumentCache.Loader<VoiceXmlDocument> loader = () -> {
+            loads.incrementAndGet();
+            return new VoiceXmlDocument();
+        };
+
+        cache.getDocument(uri, loader);
+        cache.getDocument(uri.resolve("#form"), loader);
+        assertThat(loads.get(), equalTo(1));
+
+        Thread.sleep(100);
+        cache.getDocument(uri, loader);
+        assertThat(loads.get(), equalTo(2));
+        assertThat(cache.getInvalidations(), equalTo(1L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testCopyKeepsDocumentUri() throws Exception {
+        final File file = writeDocument("<vxml xmlns=\"http://www.w3.org/2001/vxml\" version=\"2.1\"/>");
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final Document dom = factory.newDocumentBuilder().parse(file);
+        final DocumentCache cache = new DocumentCache(4);
+        cache.getDocument(file.toURI(), () -> new VoiceXmlDocument(dom));
+
+        final VoiceXmlDocument copy = cache.getDocument(file.toURI(), () -> null);
+
+        assertThat(copy.getDocument().getDocumentURI(), equalTo(dom.getDocumentURI()));
+    }
+
+    private File writeDocument(final String content) throws Exception {
+        final File file = folder.newFile("test.vxml");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,221 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvoicexml.DocumentDescriptor;
+import org.jvoicexml.DocumentServer;
+import org.jvoicexml.xml.vxml.VoiceXmlDocument;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class DocumentPrefetcherTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    private static final URI BASE = URI.create("http://localhost/app/start.vxml");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testStaticTargets() throws Exception {
+        final Document document = parse("<vxml xmlns=\"http://www.w3.org/2001/vxml\" version=\"2.1\">"
+                + "<form id=\"main\"><field name=\"answer\">"
+                + "<grammar src=\"yesno.srgs\"/>"
+                + "<prompt><audio src=\"/audio/welcome.wav\"/></prompt>"
+                + "<filled>"
+                + "<goto next=\"next.vxml#form\"/>"
+                + "<goto next=\"#main\"/>"
+                + "<goto expr=\"'computed.vxml'\"/>"
+                + "<submit next=\"submit.vxml\"/>"
+                + "<submit next=\"post.vxml\" method=\"post\"/>"
+                + "<submit next=\"params.vxml\" namelist=\"answer\"/>"
+                + "<goto next=\"next.vxml\"/>"
+                + "</filled></field>"
+                + "<subdialog name=\"sub\" src=\"sub.vxml\"/>"
+                + "</form></vxml>");
+
+        final List<String> targets = DocumentPrefetcher.targetsOf(BASE, document).stream()
+                .map(DocumentPrefetcher.Target::toString)
+                .collect(Collectors.toList());
+
+        assertThat(targets, contains(
+                "GRAMMAR http://localhost/app/yesno.srgs",
+                "AUDIO http://localhost/audio/welcome.wav",
+                "DOCUMENT http://localhost/app/next.vxml",
+                "DOCUMENT http://localhost/app/submit.vxml",
+                "DOCUMENT http://localhost/app/sub.vxml"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testPrefetchRunsInBackground() throws Exception {
+        final DocumentPrefetcher prefetcher = new DocumentPrefetcher(1, 4);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final AtomicReference<Thread> loader = new AtomicReference<>();
+        try {
+            // Blocks until released, so a synchronous prefetch would not return
+            prefetcher.prefetch(BASE, () -> {
+                loader.set(Thread.currentThread());
+                await(release);
+                loaded.countDown();
+                return null;
+            });
+            release.countDown();
+            loaded.await();
+        } finally {
+            prefetcher.shutdown();
+        }
+
+        assertThat(loader.get(), not(sameInstance(Thread.currentThread())));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testPendingTargetIsFetchedOnce() throws Exception {
+        final DocumentPrefetcher prefetcher = new DocumentPrefetcher(1, 4);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final DocumentCache.Loader<Object> loader = () -> {
+            loads.incrementAndGet();
+            await(release);
+            return null;
+        };
+        try {
+            prefetcher.prefetch(BASE, loader);
+            prefetcher.prefetch(BASE, loader);
+            assertThat(prefetcher.getPending(), equalTo(1));
+            release.countDown();
+            awaitIdle(prefetcher);
+        } finally {
+            prefetcher.shutdown();
+        }
+
+        assertThat(loads.get(), equalTo(1));
+        assertThat(prefetcher.getFetched(), equalTo(1L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testTargetIsSkippedWhenQueueIsFull() throws Exception {
+        final DocumentPrefetcher prefetcher = new DocumentPrefetcher(1, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            prefetcher.prefetch(BASE, () -> {
+                started.countDown();
+                await(release);
+                return null;
+            });
+            started.await();
+            prefetcher.prefetch(BASE.resolve("queued.vxml"), () -> null);
+            prefetcher.prefetch(BASE.resolve("skipped.vxml"), () -> null);
+
+            assertThat(prefetcher.getSkipped(), equalTo(1L));
+            assertThat(prefetcher.getPending(), equalTo(2));
+            release.countDown();
+            awaitIdle(prefetcher);
+        } finally {
+            prefetcher.shutdown();
+        }
+
+        assertThat(prefetcher.getFetched(), equalTo(2L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testPrefetchedDocumentIsCached() throws Exception {
+        final File start = writeDocument("start.vxml", "<goto next=\"next.vxml\"/>");
+        final File next = writeDocument("next.vxml", "<goto next=\"last.vxml\"/>");
+        writeDocument("last.vxml", "");
+        final Map<URI, String> sessions = new ConcurrentHashMap<>();
+        final DocumentCache documentCache = new DocumentCache(4);
+        final DocumentPrefetcher prefetcher = new DocumentPrefetcher(1, 4);
+        final CachingDocumentServer server = new CachingDocumentServer(
+                fileServer(sessions), documentCache, null, prefetcher);
+        try {
+            server.getDocument("session1", descriptor(start));
+            awaitIdle(prefetcher);
+            server.getDocument("session1", descriptor(next));
+        } finally {
+            prefetcher.shutdown();
+        }
+
+        assertThat(prefetcher.getFetched(), equalTo(1L));
+        assertThat(documentCache.getHits(), equalTo(1L));
+        // Fetched without the session, and only one level deep
+        assertThat(sessions.get(next.toURI()), equalTo(""));
+        assertThat(sessions.get(folder.getRoot().toURI().resolve("last.vxml")), nullValue());
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitIdle(final DocumentPrefetcher prefetcher)
+            throws InterruptedException {
+        while (prefetcher.getPending() > 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    private File writeDocument(final String name, final String content) throws Exception {
+        final File file = folder.newFile(name);
+        final String document = "<vxml xmlns=\"http://www.w3.org/2001/vxml\" version=\"2.1\">"
+                + "<form><block>" + content + "</block></form></vxml>";
+        Files.write(file.toPath(), document.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static DocumentDescriptor descriptor(final File file) {
+        return new DocumentDescriptor(file.toURI(), DocumentDescriptor.MIME_TYPE_XML);
+    }
+
+    /**
+     * Creates a document server that parses files and records the session
+     * of each request, the empty string for requests without a session.
+     */
+    private static DocumentServer fileServer(final Map<URI, String> sessions) {
+        return (DocumentServer) Proxy.newProxyInstance(DocumentServer.class.getClassLoader(),
+                new Class<?>[] {DocumentServer.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("getDocument")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    final URI uri = ((DocumentDescriptor) args[1]).getUri();
+                    sessions.put(uri, args[0] == null ? "" : (String) args[0]);
+                    final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                    factory.setNamespaceAware(true);
+                    return new VoiceXmlDocument(factory.newDocumentBuilder().parse(new File(uri)));
+                });
+    }
+
+    private static Document parse(final String xml) throws Exception {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+}
@@ -0,0 +1,34 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class DtmfSequenceTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testKeys() throws Exception {
+        assertThat(DtmfSequence.of("12*").getKeys(), equalTo("12*"));
+        assertThat(DtmfSequence.terminated("42").getKeys(), equalTo("42#"));
+        assertThat(DtmfSequence.of("1").withTerminator('*').getDigits(), equalTo("1"));
+        assertThat(DtmfSequence.of("1").withInterDigitDelay(200).getInterDigitDelay(), equalTo(200L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = IllegalArgumentException.class)
+    public void testInvalidKey() throws Exception {
+        DtmfSequence.of("1x");
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testLowerCaseKeys() throws Exception {
+        assertThat(DtmfSequence.of("1a").getKeys(), equalTo("1a"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testUncheckedDigitsArePassedOn() throws Exception {
+        assertThat(DtmfSequence.unchecked("1x").getKeys(), equalTo("1x"));
+    }
+}
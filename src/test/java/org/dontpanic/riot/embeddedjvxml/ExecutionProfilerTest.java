@@ -0,0 +1,87 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Test;
+import org.jvoicexml.profile.TagStrategy;
+
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+public class ExecutionProfilerTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testReport() throws Exception {
+        final ExecutionProfiler profiler = new ExecutionProfiler();
+        profiler.record("block", true, 5000000);
+        profiler.record("if", false, 1000000);
+        profiler.record("if", true, 2000000);
+
+        final StringWriter csv = new StringWriter();
+        profiler.writeCsv(csv);
+        assertThat(csv.toString(), containsString("\"block\",1,1,5000,5000"));
+        assertThat(csv.toString(), containsString("\"if\",1,2,3000,3000"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testProfiledStrategyCountsForItsTag() throws Exception {
+        final ExecutionProfiler profiler = new ExecutionProfiler();
+        final TagStrategy template = profiler.profile("if", strategy());
+
+        execute(template.newInstance());
+        execute(template.newInstance());
+
+        assertThat(executions.get(), equalTo(2));
+        final StringWriter csv = new StringWriter();
+        profiler.writeCsv(csv);
+        assertThat(csv.toString(), containsString("\"if\",2,2,"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testReset() throws Exception {
+        final ExecutionProfiler profiler = new ExecutionProfiler();
+        profiler.record("block", true, 5000000);
+        profiler.reset();
+
+        final StringWriter csv = new StringWriter();
+        profiler.writeCsv(csv);
+        assertThat(csv.toString(), not(containsString("block")));
+    }
+
+    /**
+     * Creates a strategy that counts its executions.
+     */
+    private TagStrategy strategy() {
+        return (TagStrategy) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {TagStrategy.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "newInstance":
+                        return strategy();
+                    case "execute":
+                        executions.incrementAndGet();
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static void execute(final TagStrategy strategy) throws Exception {
+        for (Method method : TagStrategy.class.getMethods()) {
+            if (method.getName().equals("execute")) {
+                method.invoke(strategy, new Object[method.getParameterCount()]);
+                return;
+            }
+        }
+        throw new AssertionError("TagStrategy has no execute method");
+    }
+}
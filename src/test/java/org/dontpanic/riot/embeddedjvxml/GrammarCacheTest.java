@@ -0,0 +1,123 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvoicexml.GrammarDocument;
+import org.jvoicexml.documentserver.JVoiceXmlGrammarDocument;
+import org.jvoicexml.interpreter.grammar.GrammarIdentifier;
+import org.jvoicexml.xml.srgs.GrammarType;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class GrammarCacheTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    private static final String GRAMMAR = "<grammar xmlns=\"http://www.w3.org/2001/06/grammar\""
+            + " version=\"1.0\" root=\"yesno\"><rule id=\"yesno\"><one-of>"
+            + "<item>yes</item><item>no</item></one-of></rule></grammar>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicInteger identifications = new AtomicInteger();
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testEachSessionGetsACopy() throws Exception {
+        final URI uri = writeGrammar(GRAMMAR);
+        final GrammarCache cache = new GrammarCache(4);
+
+        final GrammarDocument first = cache.getDocument(uri, () -> load(uri));
+        first.setMediaType(GrammarType.JSGF);
+        final GrammarDocument second = cache.getDocument(uri, () -> load(uri));
+
+        assertThat(loads.get(), equalTo(1));
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.getDocument(), equalTo(GRAMMAR));
+        assertThat(second.getMediaType(), nullValue());
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testChangedGrammarIsReloaded() throws Exception {
+        final URI uri = writeGrammar(GRAMMAR);
+        final GrammarCache cache = new GrammarCache(4);
+
+        cache.getDocument(uri, () -> load(uri));
+        final File file = new File(uri);
+        Files.write(file.toPath(), (GRAMMAR + " ").getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(file.lastModified() + 2000);
+        cache.getDocument(uri, () -> load(uri));
+
+        assertThat(loads.get(), equalTo(2));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testCachedGrammarIsIdentifiedOnce() throws Exception {
+        final URI uri = writeGrammar(GRAMMAR);
+        final GrammarCache cache = new GrammarCache(4);
+        final GrammarIdentifier identifier = new CountingIdentifier();
+
+        final GrammarType first = cache.identify(identifier,
+                cache.getDocument(uri, () -> load(uri)));
+        final GrammarType second = cache.identify(identifier,
+                cache.getDocument(uri, () -> load(uri)));
+
+        assertThat(first, equalTo(GrammarType.SRGS_XML));
+        assertThat(second, equalTo(GrammarType.SRGS_XML));
+        assertThat(identifications.get(), equalTo(1));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testInlineGrammarsAreKeyedBySource() throws Exception {
+        final GrammarCache cache = new GrammarCache(4);
+        final GrammarIdentifier identifier = new CountingIdentifier();
+
+        cache.identify(identifier, new JVoiceXmlGrammarDocument(null, GRAMMAR));
+        cache.identify(identifier, new JVoiceXmlGrammarDocument(null, new String(GRAMMAR)));
+        cache.identify(identifier, new JVoiceXmlGrammarDocument(null, GRAMMAR + " "));
+
+        assertThat(identifications.get(), equalTo(2));
+    }
+
+    private GrammarDocument load(final URI uri) {
+        loads.incrementAndGet();
+        try {
+            return new JVoiceXmlGrammarDocument(uri,
+                    new String(Files.readAllBytes(new File(uri).toPath()), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private URI writeGrammar(final String content) throws Exception {
+        final File file = folder.newFile("yesno.srgs");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file.toURI();
+    }
+
+    private class CountingIdentifier implements GrammarIdentifier {
+        @Override
+        public GrammarType identify(final GrammarDocument grammar) {
+            identifications.incrementAndGet();
+            return GrammarType.SRGS_XML;
+        }
+
+        @Override
+        public GrammarType getSupportedType() {
+            return GrammarType.SRGS_XML;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class LatencyHistogramTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testSmallValuesAreExact() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10; value++) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.getCount(), equalTo(10L));
+        assertThat(histogram.getMean(), closeTo(5.5, 0.001));
+        assertThat(histogram.getPercentile(50), equalTo(5L));
+        assertThat(histogram.getPercentile(90), equalTo(9L));
+        assertThat(histogram.getPercentile(100), equalTo(10L));
+        assertThat(histogram.getMax(), equalTo(10L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testLargeValuesWithinOneSixteenth() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1000; value <= 100000; value += 1000) {
+            histogram.record(value);
+        }
+
+        final long p50 = histogram.getPercentile(50);
+        assertThat(p50, greaterThanOrEqualTo(50000L));
+        assertThat(p50, lessThanOrEqualTo(50000L + 50000L / 16));
+        final long p99 = histogram.getPercentile(99);
+        assertThat(p99, greaterThanOrEqualTo(99000L));
+        assertThat(p99, lessThanOrEqualTo(100000L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testNanosAreRecordedAsMicros() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(15000);
+        histogram.recordNanos(-1);
+
+        assertThat(histogram.getCount(), equalTo(2L));
+        assertThat(histogram.getMax(), equalTo(15L));
+        assertThat(histogram.getPercentile(50), equalTo(0L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testReset() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertThat(histogram.getCount(), equalTo(0L));
+        assertThat(histogram.getMax(), equalTo(0L));
+        assertThat(histogram.getPercentile(99), equalTo(0L));
+    }
+}
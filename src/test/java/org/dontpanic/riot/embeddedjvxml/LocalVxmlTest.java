@@ -2,98 +2,48 @@ package org.dontpanic.riot.embeddedjvxml;
 
 import org.apache.log4j.Logger;
 import org.junit.*;
-import org.jvoicexml.ConnectionInformation;
-import org.jvoicexml.JVoiceXmlMain;
-import org.jvoicexml.JVoiceXmlMainListener;
-import org.jvoicexml.Session;
-import org.jvoicexml.client.text.TextServer;
-import org.jvoicexml.event.ErrorEvent;
+import org.junit.runner.RunWith;
 import org.jvoicexml.event.plain.ConnectionDisconnectHangupEvent;
 import org.jvoicexml.voicexmlunit.Call;
-import org.jvoicexml.xml.ssml.Speak;
-import org.jvoicexml.xml.ssml.SsmlDocument;
-
-import javax.xml.namespace.NamespaceContext;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static junit.framework.TestCase.fail;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertNotNull;
 
+@RunWith(ParallelVxmlRunner.class)
 public class LocalVxmlTest {
 
     private static final Logger LOGGER = Logger.getLogger(LocalVxmlTest.class);
 
     private static final long TEST_TIMEOUT_MS = 4000;
-    private static final int TEXT_SERVER_PORT = 4242;
+    private static final long DTMF_ROUND_TRIP_MS = 500;
+    private static final OutputSelector<String> AUDIO_SRC =
+            OutputSelector.string("/ssml:speak/ssml:audio/@src");
+
+    // Every test gets its own session, TextServer and call on the
+    // JVoiceXML shared by all worker threads
+    @Rule
+    public final VxmlCallRule vxmlCall = new VxmlCallRule();
 
-    private Session session;
     private Call call;
-    private static TextServer textServer;
-    private static JVoiceXmlMain jvxml;
-
-    private static final CountDownLatch startupLatch = new CountDownLatch(1);
-    private static final CountDownLatch shutdownLatch = new CountDownLatch(1);
-
-    @BeforeClass
-    public static void startJvxml() throws Exception {
-        final EmbeddedTextConfiguration config = new EmbeddedTextConfiguration();
-        jvxml = new JVoiceXmlMain(config);
-        jvxml.addListener(new JVoiceXmlMainListener() {
-            @Override
-            public void jvxmlStarted() {
-                startupLatch.countDown();
-            }
-
-            @Override
-            public void jvxmlTerminated() {
-                shutdownLatch.countDown();
-            }
-
-            @Override
-            public void jvxmlStartupError(final Throwable exception) {
-                LOGGER.error("error starting JVoiceML", exception);
-                startupLatch.countDown(); // cancel
-            }
-        });
-        jvxml.start();
-        startupLatch.await();
-    }
 
     @Before
-    public void startCall() throws Exception, ErrorEvent {
-
-        // Note: A TextServer is attached to a single session on construction
-        // and so must be started for every new session.
-        textServer = new TextServer(TEXT_SERVER_PORT);
-        textServer.start();
-        textServer.waitStarted();
-
-        // A new session must be created for each call
-        final ConnectionInformation info = textServer.getConnectionInformation();
-        session = jvxml.createSession(info);
-
-        call = new EmbeddedServerTextCall(session, textServer);
-    }
-
-    @After
-    public void endSession() throws ErrorEvent {
-        textServer.stopServer();
+    public void startCall() {
+        call = vxmlCall.getCall();
     }
 
     @AfterClass
     public static void stopJvxml() {
-        jvxml.getDocumentServer().stop();
-        jvxml.shutdown();
+        EmbeddedJVoiceXml.shutdownShared();
     }
 
     @Test(timeout = TEST_TIMEOUT_MS)
@@ -109,11 +59,11 @@ public class LocalVxmlTest {
         call.call(fileUri("audio.vxml"));
 
         // Expect two audio responses
-        final String audioSrc1 = audioSrc(call.getNextOutput());
+        final String audioSrc1 = audioSrc();
         assertThat(audioSrc1, endsWith("audio-in-block.wav"));
 
 
-        final String audioSrc2 = audioSrc(call.getNextOutput());
+        final String audioSrc2 = audioSrc();
         assertThat(audioSrc2, endsWith("audio-in-prompt.wav"));
 
         try {
@@ -133,6 +83,20 @@ public class LocalVxmlTest {
         call.hears("You like this example.");
     }
 
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testDtmfRoundTripIsFast() throws Exception {
+        final EmbeddedServerTextCall textCall = (EmbeddedServerTextCall) call;
+        textCall.call(fileUri("dtmf.vxml"));
+        textCall.hears("Do you like this example? Please enter 1 for yes or 2 for no");
+        final long start = System.nanoTime();
+        textCall.enter("1");
+        textCall.hears("You like this example.");
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // Discarding the update that follows the input must not wait for it
+        assertThat(textCall.getOutputBuffer().getSpurious(), equalTo(1L));
+        assertThat(elapsed, lessThan(DTMF_ROUND_TRIP_MS));
+    }
+
     @Test(timeout = TEST_TIMEOUT_MS)
     public void testDtmfInvalidInput() throws Exception {
         call.call(fileUri("dtmf.vxml"));
@@ -159,6 +123,38 @@ public class LocalVxmlTest {
         call.hears("Do you like this example?");
     }
 
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testNoInput() throws Exception {
+        // The document shortens the noinput timeout to 1s
+        call.call(fileUri("noinput.vxml"));
+        call.hears("Do you like this example?");
+        call.hears("I did not hear you.");
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testAsyncSpokenInput() throws Exception {
+        final EmbeddedServerTextCall asyncCall = (EmbeddedServerTextCall) call;
+        asyncCall.call(fileUri("input.vxml"));
+        final String output = asyncCall.nextOutputAsync()
+                .thenCompose(prompt -> asyncCall.sayAsync("yes"))
+                .thenCompose(said -> asyncCall.nextOutputAsync())
+                .thenApply(document -> document.getSpeak().getTextContent())
+                .get();
+        assertThat(output, equalTo("You like this example."));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testBlockingAndAsyncInput() throws Exception {
+        final EmbeddedServerTextCall asyncCall = (EmbeddedServerTextCall) call;
+        asyncCall.call(fileUri("input.vxml"));
+        asyncCall.hears("Do you like this example?");
+        asyncCall.say("um...");
+        asyncCall.hears("Do you like this example?");
+        // The request for input answered by say() must not be answered again
+        asyncCall.sayAsync("yes").get();
+        asyncCall.hears("You like this example.");
+    }
+
     @Test(timeout = TEST_TIMEOUT_MS)
     public void testGoto() throws Exception {
         call.call(fileUri("goto1.vxml"));
@@ -179,13 +175,8 @@ public class LocalVxmlTest {
         return vxmlFile.toURI();
     }
 
-    private String audioSrc(SsmlDocument document) throws XPathExpressionException {
-        NamespaceContext ns = new SimpleNamespaceContext("ssml", Speak.DEFAULT_XMLNS);
-
-        final XPathFactory xpathFactory = XPathFactory.newInstance();
-        final XPath xpath = xpathFactory.newXPath();
-        xpath.setNamespaceContext(ns);
-
-        return (String)xpath.evaluate("/ssml:speak/ssml:audio/@src", document.getDocument(), XPathConstants.STRING);
+    private String audioSrc() {
+        final EmbeddedServerTextCall textCall = (EmbeddedServerTextCall) call;
+        return textCall.query(AUDIO_SRC);
     }
 }
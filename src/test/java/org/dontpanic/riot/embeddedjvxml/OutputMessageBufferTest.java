@@ -0,0 +1,155 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Test;
+import org.jvoicexml.event.JVoiceXMLEvent;
+import org.jvoicexml.event.plain.ConnectionDisconnectHangupEvent;
+import org.jvoicexml.xml.ssml.SsmlDocument;
+
+import java.util.concurrent.TimeoutException;
+
+import static junit.framework.TestCase.fail;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class OutputMessageBufferTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    private static final String PROMPT =
+            "Do you like this example? Please enter 1 for yes or 2 for no";
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testOutputsAndEventsInOrder() throws Exception {
+        final OutputMessageBuffer buffer =
+                new OutputMessageBuffer(4, OutputMessageBuffer.OverflowPolicy.BLOCK);
+        final SsmlDocument first = new SsmlDocument();
+        final SsmlDocument second = new SsmlDocument();
+        buffer.outputSsml(first);
+        buffer.outputSsml(second);
+        buffer.disconnected();
+
+        assertThat(buffer.nextMessage(), sameInstance(first));
+        assertThat(buffer.nextMessage(), sameInstance(second));
+        try {
+            buffer.nextMessage();
+            fail("Disconnect expected");
+        } catch (JVoiceXMLEvent e) {
+            assertThat(e, instanceOf(ConnectionDisconnectHangupEvent.class));
+        }
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testDropOldest() throws Exception {
+        final OutputMessageBuffer buffer =
+                new OutputMessageBuffer(1, OutputMessageBuffer.OverflowPolicy.DROP_OLDEST);
+        final SsmlDocument latest = new SsmlDocument();
+        buffer.outputSsml(new SsmlDocument());
+        buffer.outputSsml(latest);
+
+        assertThat(buffer.getDropped(), equalTo(1L));
+        assertThat(buffer.nextMessage(), sameInstance(latest));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testFailOnOverflow() throws Exception {
+        final OutputMessageBuffer buffer =
+                new OutputMessageBuffer(1, OutputMessageBuffer.OverflowPolicy.FAIL);
+        final SsmlDocument first = new SsmlDocument();
+        buffer.outputSsml(first);
+        buffer.outputSsml(new SsmlDocument());
+
+        assertThat(buffer.nextMessage(), sameInstance(first));
+        try {
+            buffer.nextMessage();
+            fail("Overflow expected");
+        } catch (JVoiceXMLEvent e) {
+            assertThat(e.getEventType(), equalTo(OutputMessageBuffer.OVERFLOW_EVENT));
+        }
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = TimeoutException.class)
+    public void testTimeout() throws Exception {
+        final OutputMessageBuffer buffer = new OutputMessageBuffer();
+        buffer.nextMessage(10);
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testUpdateAfterDtmfIsDiscarded() throws Exception {
+        final OutputMessageBuffer buffer = new OutputMessageBuffer();
+        buffer.dtmfSent();
+        buffer.outputPrompt(prompt(PROMPT));
+        final Prompt next = prompt("You like this example.");
+        buffer.outputPrompt(next);
+
+        assertThat(buffer.getSpurious(), equalTo(1L));
+        assertThat(buffer.nextPrompt(), sameInstance(next));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testRepromptAfterUpdateIsKept() throws Exception {
+        final OutputMessageBuffer buffer = new OutputMessageBuffer(4,
+                OutputMessageBuffer.OverflowPolicy.BLOCK);
+        buffer.dtmfSent();
+        buffer.outputPrompt(prompt(PROMPT));
+        final Prompt reprompt = prompt(PROMPT);
+        buffer.outputPrompt(reprompt);
+
+        assertThat(buffer.getSpurious(), equalTo(1L));
+        assertThat(buffer.nextPrompt(), sameInstance(reprompt));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testSpokenInputIsAnsweredWithoutUpdate() throws Exception {
+        final OutputMessageBuffer buffer = new OutputMessageBuffer();
+        buffer.inputSent();
+        final Prompt next = prompt("You like this example.");
+        buffer.outputPrompt(next);
+
+        assertThat(buffer.getSpurious(), equalTo(0L));
+        assertThat(buffer.nextPrompt(), sameInstance(next));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testDisconnectEndsDtmfSequence() throws Exception {
+        final OutputMessageBuffer buffer = new OutputMessageBuffer(4,
+                OutputMessageBuffer.OverflowPolicy.BLOCK);
+        buffer.dtmfSent();
+        buffer.disconnected();
+        final Prompt next = prompt("Goodbye");
+        buffer.outputPrompt(next);
+
+        assertThat(buffer.getSpurious(), equalTo(0L));
+        try {
+            buffer.nextPrompt();
+            fail("Disconnect expected");
+        } catch (JVoiceXMLEvent e) {
+            assertThat(e, instanceOf(ConnectionDisconnectHangupEvent.class));
+        }
+        assertThat(buffer.nextPrompt(), sameInstance(next));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testResponseTimeIsRecordedForOutputAnsweringInput() throws Exception {
+        final OutputMessageBuffer buffer = new OutputMessageBuffer(4,
+                OutputMessageBuffer.OverflowPolicy.BLOCK);
+        final CallMetrics metrics = new CallMetrics();
+        buffer.setMetrics(metrics);
+        buffer.outputPrompt(prompt(PROMPT));
+
+        buffer.dtmfSent();
+        buffer.outputPrompt(prompt(PROMPT));
+        assertThat(metrics.getInputToPrompt().getCount(), equalTo(0L));
+
+        buffer.outputPrompt(prompt("You like this example."));
+        buffer.outputPrompt(prompt("Goodbye"));
+        assertThat(metrics.getInputToPrompt().getCount(), equalTo(1L));
+    }
+
+    private static Prompt prompt(final String text) throws Exception {
+        final SsmlDocument document = new SsmlDocument();
+        document.getSpeak().addText(text);
+        return Prompt.of(document);
+    }
+}
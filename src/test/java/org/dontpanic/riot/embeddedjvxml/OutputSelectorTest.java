@@ -0,0 +1,48 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Test;
+import org.jvoicexml.xml.ssml.SsmlDocument;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class OutputSelectorTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    private static final String SSML = "<speak version=\"1.0\" xmlns=\"http://www.w3.org/2001/10/synthesis\">"
+            + "Hello<break time=\"300ms\"/><prosody rate=\"slow\">World!</prosody>"
+            + "<audio src=\"file:/a.wav\"/></speak>";
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testBuiltinSelectors() throws Exception {
+        final Prompt prompt = parse(SSML);
+
+        assertThat(OutputSelector.TEXT.select(prompt), equalTo("HelloWorld!"));
+        assertThat(OutputSelector.AUDIO_SOURCES.select(prompt), contains("file:/a.wav"));
+        assertThat(OutputSelector.BREAK_TIMES.select(prompt), contains("300ms"));
+        assertThat(OutputSelector.PROSODY_RATES.select(prompt), contains("slow"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testUserExpressionIsCached() throws Exception {
+        final OutputSelector<String> selector = OutputSelector.string("/ssml:speak/ssml:audio/@src");
+
+        assertThat(OutputSelector.string("/ssml:speak/ssml:audio/@src"), sameInstance(selector));
+        assertThat(selector.select(parse(SSML)), equalTo("file:/a.wav"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = IllegalArgumentException.class)
+    public void testInvalidExpression() {
+        OutputSelector.strings("///");
+    }
+
+    private static Prompt parse(final String ssml) throws Exception {
+        return Prompt.of(new SsmlDocument(new InputSource(new StringReader(ssml))));
+    }
+}
@@ -0,0 +1,181 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvoicexml.event.error.BadFetchError;
+import org.jvoicexml.xml.vxml.RequestMethod;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class PooledHttpSchemeStrategyTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    private static final String DOCUMENT = "<vxml version=\"2.1\"/>";
+
+    private static final String ETAG = "\"v1\"";
+
+    private Server server;
+    private URI uri;
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void startServer() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(final String target, final Request baseRequest,
+                               final HttpServletRequest request,
+                               final HttpServletResponse response) throws IOException {
+                clientPorts.add(request.getRemotePort());
+                baseRequest.setHandled(true);
+                if ("/missing.vxml".equals(target)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
+                response.setHeader("ETag", ETAG);
+                if ("/private.vxml".equals(target)) {
+                    response.setHeader("Cache-Control", "max-age=60, Private");
+                } else if ("/cookie.vxml".equals(target)) {
+                    response.setHeader("Vary", "Cookie");
+                } else if ("/encoding.vxml".equals(target)) {
+                    response.setHeader("Vary", "Accept-Encoding");
+                }
+                if (ETAG.equals(request.getHeader("If-None-Match"))) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+                downloads.incrementAndGet();
+                response.setContentType("application/voicexml+xml");
+                response.getOutputStream().write(DOCUMENT.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.start();
+        final int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        uri = new URI("http://localhost:" + port + "/test.vxml");
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        server.stop();
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testUnmodifiedDocumentIsRevalidated() throws Exception {
+        final PooledHttpSchemeStrategy strategy = new PooledHttpSchemeStrategy();
+
+        assertThat(fetch(strategy, "session1"), equalTo(DOCUMENT));
+        assertThat(fetch(strategy, "session2"), equalTo(DOCUMENT));
+        assertThat(fetch(strategy, "session1"), equalTo(DOCUMENT));
+
+        assertThat(downloads.get(), equalTo(1));
+        assertThat(strategy.getNotModified(), equalTo(2L));
+        // All requests were sent on the same kept-alive connection
+        assertThat(clientPorts.size(), equalTo(1));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = BadFetchError.class)
+    public void testMissingDocument() throws Exception {
+        final PooledHttpSchemeStrategy strategy = new PooledHttpSchemeStrategy();
+        strategy.getInputStream("session1", uri.resolve("missing.vxml"), RequestMethod.GET, 0, null);
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testPrivateDocumentIsNotShared() throws Exception {
+        final PooledHttpSchemeStrategy strategy = new PooledHttpSchemeStrategy();
+
+        fetch(strategy, "session1", uri.resolve("private.vxml"), 0);
+        fetch(strategy, "session2", uri.resolve("private.vxml"), 0);
+
+        assertThat(downloads.get(), equalTo(2));
+        assertThat(strategy.size(), equalTo(0));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testDocumentVaryingOnCookieIsNotShared() throws Exception {
+        final PooledHttpSchemeStrategy strategy = new PooledHttpSchemeStrategy();
+
+        fetch(strategy, "session1", uri.resolve("cookie.vxml"), 0);
+        fetch(strategy, "session2", uri.resolve("cookie.vxml"), 0);
+
+        assertThat(downloads.get(), equalTo(2));
+        assertThat(strategy.size(), equalTo(0));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testDocumentVaryingOnEncodingIsShared() throws Exception {
+        final PooledHttpSchemeStrategy strategy = new PooledHttpSchemeStrategy();
+
+        fetch(strategy, "session1", uri.resolve("encoding.vxml"), 0);
+        fetch(strategy, "session2", uri.resolve("encoding.vxml"), 0);
+
+        assertThat(downloads.get(), equalTo(1));
+        assertThat(strategy.getNotModified(), equalTo(1L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testCacheIsBoundedByBytes() throws Exception {
+        final int length = DOCUMENT.getBytes(StandardCharsets.UTF_8).length;
+        final PooledHttpSchemeStrategy strategy = new PooledHttpSchemeStrategy("http",
+                PooledHttpSchemeStrategy.DEFAULT_MAX_ENTRIES, length);
+
+        fetch(strategy, "session1", uri, 0);
+        fetch(strategy, "session1", uri.resolve("other.vxml"), 0);
+
+        assertThat(strategy.size(), equalTo(1));
+        assertThat(strategy.getCachedBytes(), equalTo((long) length));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testTimeoutBeyondIntRange() throws Exception {
+        final PooledHttpSchemeStrategy strategy = new PooledHttpSchemeStrategy();
+        assertThat(fetch(strategy, "session1", uri, 3000000000L), equalTo(DOCUMENT));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = BadFetchError.class)
+    public void testFetchAfterShutdown() throws Exception {
+        final PooledHttpSchemeStrategy strategy = new PooledHttpSchemeStrategy();
+        fetch(strategy, "session1");
+        strategy.shutdown();
+
+        assertThat(strategy.size(), equalTo(0));
+        fetch(strategy, "session1");
+    }
+
+    private String fetch(final PooledHttpSchemeStrategy strategy, final String sessionId)
+            throws Exception {
+        return fetch(strategy, sessionId, uri, 0);
+    }
+
+    private String fetch(final PooledHttpSchemeStrategy strategy, final String sessionId,
+                         final URI target, final long timeout) throws Exception {
+        try (InputStream in = strategy.getInputStream(sessionId, target, RequestMethod.GET,
+                timeout, null)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Test;
+import org.jvoicexml.xml.ssml.Audio;
+import org.jvoicexml.xml.ssml.Speak;
+import org.jvoicexml.xml.ssml.SsmlDocument;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class PromptTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testTextMatchesDocument() throws Exception {
+        final SsmlDocument document = new SsmlDocument();
+        final Speak speak = document.getSpeak();
+        speak.addText("Hello ");
+        final Audio audio = speak.appendChild(Audio.class);
+        audio.setSrc("file:/a.wav");
+        speak.addText("World!");
+
+        final Prompt prompt = Prompt.of(document);
+        assertThat(prompt.getText(), equalTo(speak.getTextContent()));
+        assertThat(prompt.getAudioSources(), contains("file:/a.wav"));
+        assertThat(prompt.getDocument(), is(document));
+    }
+}
@@ -0,0 +1,98 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertNotNull;
+
+public class SessionPoolTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    private EmbeddedJVoiceXml jvxml;
+
+    @After
+    public void stopJvxml() {
+        if (jvxml != null) {
+            jvxml.shutdown();
+        }
+        EmbeddedJVoiceXml.shutdownShared();
+        System.clearProperty(EmbeddedJVoiceXml.SESSIONS_PROPERTY);
+        System.clearProperty(EmbeddedJVoiceXml.SESSION_POOL_PROPERTY);
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testCallRunsWhileReplacementIsReady() throws Exception {
+        jvxml = new EmbeddedJVoiceXml(2);
+        jvxml.setSessionPoolSize(1);
+        jvxml.start();
+        final SessionPool pool = jvxml.getSessionPool();
+        awaitReady(pool, 1);
+
+        final EmbeddedServerTextCall call = jvxml.newCall();
+        try {
+            awaitReady(pool, 1);
+            call.call(fileUri("hello.vxml"));
+            call.hears("Hello World!");
+            call.hears("Goodbye!");
+        } finally {
+            jvxml.endCall(call);
+        }
+
+        assertThat(pool.getHits(), equalTo(1L));
+        assertThat(pool.getMisses(), equalTo(0L));
+        assertThat(pool.getDiscarded(), equalTo(0L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testShutdownReleasesPlatformsOfReadySessions() throws Exception {
+        jvxml = new EmbeddedJVoiceXml(2);
+        jvxml.setSessionPoolSize(1);
+        jvxml.start();
+        final SessionPool pool = jvxml.getSessionPool();
+        awaitReady(pool, 1);
+        final TextPlatformPool platforms = jvxml.getConfiguration().getPlatformPool();
+        assertThat(platforms.getActive(), equalTo(1));
+
+        pool.shutdown();
+
+        assertThat(pool.getReady(), equalTo(0));
+        assertThat(platforms.getActive(), equalTo(0));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = IllegalArgumentException.class)
+    public void testPoolMustLeavePlatformsForCalls() throws Exception {
+        new EmbeddedJVoiceXml(2).setSessionPoolSize(2);
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testSharedInstanceHasPlatformsForReadySessions() throws Exception {
+        EmbeddedJVoiceXml.shutdownShared();
+        System.setProperty(EmbeddedJVoiceXml.SESSIONS_PROPERTY, "1");
+        System.setProperty(EmbeddedJVoiceXml.SESSION_POOL_PROPERTY, "1");
+
+        final EmbeddedJVoiceXml shared = EmbeddedJVoiceXml.getShared();
+
+        assertThat(shared.getConfiguration().getPlatformPool().getSize(), equalTo(2));
+        assertThat(shared.getSessionPool().getSize(), equalTo(1));
+    }
+
+    private static void awaitReady(final SessionPool pool, final int ready)
+            throws InterruptedException {
+        while (pool.getReady() < ready) {
+            Thread.sleep(1);
+        }
+    }
+
+    private URI fileUri(final String filename) throws URISyntaxException {
+        final URL vxmlFile = getClass().getClassLoader().getResource(filename);
+        assertNotNull("File not found: " + filename, vxmlFile);
+        return vxmlFile.toURI();
+    }
+}
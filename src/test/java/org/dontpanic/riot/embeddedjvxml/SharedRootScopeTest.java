@@ -0,0 +1,102 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvoicexml.event.error.SemanticError;
+import org.jvoicexml.interpreter.datamodel.DataModel;
+import org.mozilla.javascript.Context;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+public class SharedRootScopeTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    private DataModel first;
+    private DataModel second;
+
+    @Before
+    public void createSessions() throws Exception {
+        final DataModel template = new CachingEcmaScriptDataModel(new ScriptCache(), true);
+        first = template.newInstance();
+        first.createScope();
+        second = template.newInstance();
+        second.createScope();
+    }
+
+    @After
+    public void exitContext() {
+        while (Context.getCurrentContext() != null) {
+            Context.exit();
+        }
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testScopeIsShared() throws Exception {
+        assertThat(SharedRootScope.getInstance(), sameInstance(SharedRootScope.getInstance()));
+        assertThat(first.evaluateExpression("Math.max(1, 2)", Object.class), equalTo((Object) 2.0));
+        assertThat(second.evaluateExpression("Math.max(1, 2)", Object.class), equalTo((Object) 2.0));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testGlobalsAreNotShared() throws Exception {
+        first.evaluateExpression("var declared = 1", Object.class);
+        first.evaluateExpression("undeclared = 2", Object.class);
+
+        assertThat(first.evaluateExpression("typeof declared", String.class), equalTo("number"));
+        assertThat(first.evaluateExpression("typeof undeclared", String.class), equalTo("number"));
+        assertThat(second.evaluateExpression("typeof declared", String.class), equalTo("undefined"));
+        assertThat(second.evaluateExpression("typeof undeclared", String.class), equalTo("undefined"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testSessionsWritingSameGlobalAreIsolated() throws Exception {
+        first.evaluateExpression("var answer = 'first'", Object.class);
+        second.evaluateExpression("var answer = 'second'", Object.class);
+        first.evaluateExpression("count = 1", Object.class);
+        second.evaluateExpression("count = 2", Object.class);
+
+        assertThat(first.evaluateExpression("answer", String.class), equalTo("first"));
+        assertThat(second.evaluateExpression("answer", String.class), equalTo("second"));
+        assertThat(first.evaluateExpression("count", Double.class), equalTo(1.0));
+        assertThat(second.evaluateExpression("count", Double.class), equalTo(2.0));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testSharingIsOptIn() throws Exception {
+        final EmbeddedTextConfiguration configuration = new EmbeddedTextConfiguration();
+        assertThat(configuration.isSharedRootScope(), equalTo(false));
+
+        configuration.setSharedRootScope(true);
+        final DataModel model =
+                configuration.loadObjects(DataModel.class, null).iterator().next();
+
+        assertThat(((CachingEcmaScriptDataModel) model).isSharedRootScope(), equalTo(true));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testStandardObjectsCannotBeModified() throws Exception {
+        try {
+            first.evaluateExpression("Math.answer = 42", Object.class);
+            fail("the shared standard objects were modified");
+        } catch (SemanticError e) {
+            // expected, the shared scope is sealed
+        }
+
+        assertThat(second.evaluateExpression("typeof Math.answer", String.class),
+                equalTo("undefined"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testContextIsExitedWithLastScope() throws Exception {
+        first.deleteScope();
+        second.deleteScope();
+
+        assertThat(Context.getCurrentContext(), nullValue());
+    }
+}
@@ -0,0 +1,54 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Test;
+import org.jvoicexml.profile.TagStrategy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TagStrategyRegistryTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testRegistryIsShared() throws Exception {
+        assertThat(TagStrategyRegistry.getInstance(),
+                sameInstance(TagStrategyRegistry.getInstance()));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testBuiltinStrategiesAreResolved() throws Exception {
+        final TagStrategyRegistry registry = TagStrategyRegistry.load();
+
+        assertThat(registry.getTags(), hasItems("assign", "goto", "prompt", "#text", "var"));
+        assertThat(registry.getTagStrategy("goto").getClass().getSimpleName(),
+                equalTo("GotoStrategy"));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testEachNodeGetsItsOwnStrategy() throws Exception {
+        final TagStrategyRegistry registry = TagStrategyRegistry.getInstance();
+
+        final TagStrategy first = registry.getTagStrategy("prompt");
+        final TagStrategy second = registry.getTagStrategy("prompt");
+
+        assertThat(first, notNullValue());
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.getClass(), equalTo(first.getClass()));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testUnknownTag() throws Exception {
+        assertThat(TagStrategyRegistry.getInstance().getTagStrategy("unknown"), nullValue());
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = UnsupportedOperationException.class)
+    public void testRegistryIsImmutable() throws Exception {
+        TagStrategyRegistry.getInstance().getTags().clear();
+    }
+}
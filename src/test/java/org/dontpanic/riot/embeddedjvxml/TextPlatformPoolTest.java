@@ -0,0 +1,178 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.Test;
+import org.jvoicexml.ConnectionInformation;
+import org.jvoicexml.JVoiceXml;
+import org.jvoicexml.Session;
+import org.jvoicexml.client.text.TextListener;
+import org.jvoicexml.event.error.NoresourceError;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TextPlatformPoolTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    private final AtomicInteger sessionIds = new AtomicInteger();
+    private final CountDownLatch sessionsEnded = new CountDownLatch(1);
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testPlatformIsReturnedAfterSessionEnd() throws Exception {
+        final TextPlatformPool pool = new TextPlatformPool(1);
+        final StubTransport transport = new StubTransport();
+        final Session session = pool.createSession(jvxml(), transport);
+
+        transport.disconnect();
+
+        // The session did not end yet, so JVoiceXML still holds the platform
+        assertThat(pool.getActive(), equalTo(1));
+        assertThat(pool.releaseAfterEnd(session).isDone(), equalTo(false));
+
+        sessionsEnded.countDown();
+        pool.releaseAfterEnd(session).get();
+        assertThat(pool.getActive(), equalTo(0));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testPlatformIsReturnedOnce() throws Exception {
+        final TextPlatformPool pool = new TextPlatformPool(2);
+        final StubTransport transport = new StubTransport();
+        final Session session = pool.createSession(jvxml(), transport);
+        pool.createSession(jvxml(), new StubTransport());
+        sessionsEnded.countDown();
+
+        transport.disconnect();
+        pool.releaseAfterEnd(session).get();
+        pool.releaseAfterEnd(session).get();
+        pool.release(session);
+
+        assertThat(pool.getActive(), equalTo(1));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testUnusedSessionIsReleasedImmediately() throws Exception {
+        final TextPlatformPool pool = new TextPlatformPool(1);
+        final Session session = pool.createSession(jvxml(), new StubTransport());
+
+        pool.release(session);
+
+        assertThat(pool.getActive(), equalTo(0));
+        assertThat(pool.releaseAfterEnd(session).isDone(), equalTo(true));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = NoresourceError.class)
+    public void testExhaustedPoolFails() throws Exception {
+        final TextPlatformPool pool = new TextPlatformPool(1);
+        pool.setExhaustedAction(TextPlatformPool.ExhaustedAction.FAIL);
+        pool.createSession(jvxml(), new StubTransport());
+        pool.createSession(jvxml(), new StubTransport());
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testWaitingCallerGetsReturnedPlatform() throws Exception {
+        final TextPlatformPool pool = new TextPlatformPool(1);
+        final StubTransport transport = new StubTransport();
+        final Session first = pool.createSession(jvxml(), transport);
+        final CountDownLatch created = new CountDownLatch(1);
+        final Thread waiting = new Thread(() -> {
+            try {
+                pool.createSession(jvxml(), new StubTransport());
+                created.countDown();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waiting.start();
+        while (pool.getWaiting() == 0) {
+            Thread.sleep(1);
+        }
+
+        transport.disconnect();
+        assertThat(created.await(100, TimeUnit.MILLISECONDS), equalTo(false));
+
+        sessionsEnded.countDown();
+        pool.releaseAfterEnd(first).get();
+        created.await();
+        assertThat(pool.getActive(), equalTo(1));
+        assertThat(pool.getAcquired(), equalTo(2L));
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS, expected = NoresourceError.class)
+    public void testAcquireTimesOut() throws Exception {
+        final TextPlatformPool pool = new TextPlatformPool(1);
+        pool.setAcquireTimeout(10);
+        pool.createSession(jvxml(), new StubTransport());
+        pool.createSession(jvxml(), new StubTransport());
+    }
+
+    /**
+     * Creates an interpreter whose sessions end once {@link #sessionsEnded}
+     * is counted down.
+     */
+    private JVoiceXml jvxml() {
+        return (JVoiceXml) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {JVoiceXml.class}, (proxy, method, args) -> {
+                    if ("createSession".equals(method.getName())) {
+                        return session("session" + sessionIds.incrementAndGet());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private Session session(final String id) {
+        return (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Session.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getSessionID":
+                        return id;
+                    case "waitSessionEnd":
+                        sessionsEnded.await();
+                        return null;
+                    case "hashCode":
+                        return id.hashCode();
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return id;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static class StubTransport implements TextTransport {
+        private final List<TextListener> listeners = new CopyOnWriteArrayList<>();
+
+        @Override
+        public ConnectionInformation getConnectionInformation() {
+            return null;
+        }
+
+        @Override
+        public void addTextListener(final TextListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void sendInput(final String utterance) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void disconnect() {
+            for (TextListener listener : listeners) {
+                listener.disconnected();
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.dontpanic.riot.embeddedjvxml;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvoicexml.client.text.TextServer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TextServerPoolTest {
+
+    private static final long TEST_TIMEOUT_MS = 4000;
+
+    private TextServerPool pool;
+    private final List<TextServer> servers = new ArrayList<>();
+
+    @Before
+    public void startPool() throws Exception {
+        pool = new TextServerPool(1);
+        pool.start();
+    }
+
+    @After
+    public void stopPool() {
+        for (TextServer server : servers) {
+            pool.release(server);
+        }
+        pool.shutdown();
+    }
+
+    @Test(timeout = TEST_TIMEOUT_MS)
+    public void testEachCheckoutStartsOneReplacement() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            servers.add(pool.acquire());
+        }
+        while (pool.getReady() == 0) {
+            Thread.sleep(1);
+        }
+
+        assertThat(pool.getCheckouts(), equalTo(3L));
+        assertThat(pool.getStarted(), equalTo(pool.getSize() + pool.getCheckouts()));
+        assertThat(pool.getReady(), equalTo(1));
+    }
+}